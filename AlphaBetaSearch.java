@@ -0,0 +1,313 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Iterative-deepening alpha-beta search with a heuristic evaluation, for boards too big
+ * to be solved by minimax.
+ *
+ * The search is repeated with a depth limit of 1, 2, 3... moves until the deadline passes.
+ * Positions at the depth limit are scored by counting the open lines: groups of numberWin
+ * aligned boxes holding the symbols of only one player. The move returned is the best move
+ * of the last depth that was searched completely, so the deadline is never exceeded.
+ */
+public class AlphaBetaSearch {
+    // Score of a win at round 0 for the winner, far above any evaluation
+    private static final int WIN = 1 << 28;
+
+    // Bigger than any score
+    private static final int INFINITY = 1 << 30;
+
+    // Transposition table: 2^20 entries
+    private static final int TABLE_SIZE = 20;
+
+    private final TranspositionTable table = new TranspositionTable(TABLE_SIZE);
+
+    // Set by another thread to stop the search early
+    private final AtomicBoolean stop;
+
+    // Game the buffers below were sized for
+    private Game preparedGame;
+
+    // Value of an open line holding n symbols of one player
+    private int[] lineValue;
+
+    // History heuristic: how often each move caused a cutoff, used to try good moves first
+    private int[] history;
+
+    // Moves of each depth of the current search
+    private int[][] moves;
+
+    // State of the current search
+    private long deadline;
+    private int nodes;
+    private boolean timeUp;
+    private int completedDepth;
+    private int bestScore;
+
+    // Position of the last search and its best move, to start from it if the search is run again, -1 if none
+    private long rootHash;
+    private int rootBest = -1;
+
+    /**
+     * Creates a search that only stops at its deadline.
+     */
+    public AlphaBetaSearch() {
+        this(new AtomicBoolean());
+    }
+
+    /**
+     * Creates a search that also stops as soon as the given flag is set.
+     *
+     * @param stop flag set by another thread to stop the search early
+     */
+    public AlphaBetaSearch(AtomicBoolean stop) {
+        this.stop = stop;
+    }
+
+    // Getters for the last search
+    public int getCompletedDepth() {return completedDepth;}
+
+    public int getBestScore() {return bestScore;}
+
+    /**
+     * Value of the best score between -1 and 1: exactly -1 or 1 for a forced loss or win,
+     * otherwise the evaluation squashed so that an open line one symbol short of a win is worth about 0.76.
+     */
+    public double getValue() {
+        if (Math.abs(bestScore) > WIN / 2) return Math.signum(bestScore);
+        return Math.tanh(bestScore / (double) Math.max(1, lineValue[Math.max(0, lineValue.length - 2)]));
+    }
+
+    public int getNodes() {return nodes;}
+
+    public TranspositionTable getTable() {return table;}
+
+    /**
+     * Searches deeper and deeper until the deadline passes or the game is solved,
+     * and returns the best move of the last completed depth. A new depth is not started once
+     * half of the time is used, as it would take longer than all the previous ones.
+     * The game is played and undone in place and is left unchanged.
+     *
+     * @param game the current game state, which must still be PLAYING
+     * @param deadline time (System.nanoTime) at which the search stops
+     * @return the best move found, only meaningful if the search was not stopped
+     */
+    public int search(Game game, long deadline) {
+        long startTime = System.nanoTime();
+        prepare(game);
+        this.deadline = deadline;
+        this.nodes = 0;
+        this.timeUp = false;
+        this.completedDepth = 0;
+        table.resetCounters();
+
+        // Older cutoffs matter less
+        for (int i = 0; i < history.length; i++) {
+            history[i] /= 2;
+        }
+
+        int emptyBoxes = game.getRows() * game.getColumns() - game.getRound();
+        game.getCanonicalMoves(moves[0]);
+        int bestMove = moves[0][0];
+        // Start from the best move of the last search if it was on this position, for example a search stopped early
+        if (game.getHash() != rootHash) {
+            rootHash = game.getHash();
+            rootBest = -1;
+        } else if (rootBest >= 0) {
+            bestMove = rootBest;
+        }
+        for (int depth = 1; depth <= emptyBoxes && !timeUp; depth++) {
+            int move = searchRoot(game, depth, bestMove);
+            if (timeUp) break;
+
+            bestMove = move;
+            rootBest = move;
+            completedDepth = depth;
+
+            // A forced win or loss was found, searching deeper won't change it
+            if (Math.abs(bestScore) > WIN / 2) break;
+
+            // The next depth would not be finished in time
+            long now = System.nanoTime();
+            if (now - startTime > (deadline - now)) break;
+        }
+        return bestMove;
+    }
+
+    /**
+     * Searches every move of the root to the given depth, starting with the previous best move.
+     *
+     * @return the best move at this depth, only meaningful if the time is not up
+     */
+    private int searchRoot(Game game, int depth, int previousBest) {
+        int[] rootMoves = moves[0];
+        int count = game.getCanonicalMoves(rootMoves);
+        for (int k = 1; k < count; k++) {
+            if (rootMoves[k] == previousBest) {
+                rootMoves[k] = rootMoves[0];
+                rootMoves[0] = previousBest;
+            }
+        }
+
+        int alpha = -INFINITY;
+        int bestMove = previousBest;
+        for (int k = 0; k < count; k++) {
+            int move = rootMoves[k];
+            game.play(move);
+            int score = -alphaBeta(game, depth - 1, 1, -INFINITY, -alpha);
+            game.undo(move);
+            if (timeUp) return bestMove;
+
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+            }
+        }
+        bestScore = alpha;
+        return bestMove;
+    }
+
+    /**
+     * Negamax alpha-beta search limited to the given depth.
+     *
+     * @param game the current game state
+     * @param depth number of moves left to search
+     * @param ply number of moves played since the root
+     * @param alpha alpha value for pruning
+     * @param beta beta value for pruning
+     * @return score of the position for the player to move
+     */
+    private int alphaBeta(Game game, int depth, int ply, int alpha, int beta) {
+        // Terminal states: the player who just played won or drew
+        if (game.getGameState() == GameState.DRAW) {
+            return 0;
+        } else if (game.getGameState() != GameState.PLAYING) {
+            return game.getRound() - WIN;
+        }
+        if (depth == 0) {
+            return evaluate(game);
+        }
+
+        // Check the clock once in a while
+        if (++nodes % 256 == 0 && (stop.get() || System.nanoTime() >= deadline)) {
+            timeUp = true;
+        }
+        if (timeUp) return 0;
+
+        int symmetry = game.getCanonicalSymmetry();
+        long hash = game.getCanonicalHash();
+        long entry = table.probe(hash);
+        int tableMove = -1;
+        if (entry != TranspositionTable.MISS) {
+            if (TranspositionTable.move(entry) >= 0) {
+                tableMove = game.symmetricMove(game.inverseSymmetry(symmetry), TranspositionTable.move(entry));
+            }
+            // Only trust results of searches at least as deep as this one
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.score(entry);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT) return score;
+                if (bound == TranspositionTable.LOWER) alpha = Math.max(alpha, score);
+                if (bound == TranspositionTable.UPPER) beta = Math.min(beta, score);
+                if (alpha >= beta) return score;
+            }
+        }
+
+        int count = orderMoves(game, ply, tableMove);
+        int[] plyMoves = moves[ply];
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = -1;
+        for (int k = 0; k < count; k++) {
+            int move = plyMoves[k];
+            game.play(move);
+            int score = -alphaBeta(game, depth - 1, ply + 1, -beta, -alpha);
+            game.undo(move);
+            if (timeUp) return 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+            alpha = Math.max(alpha, score);
+            if (alpha >= beta) {
+                history[move] += depth * depth;
+                break;
+            }
+        }
+
+        int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER
+                : bestScore >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(hash, depth, bestScore, bound, game.symmetricMove(symmetry, bestMove));
+        return bestScore;
+    }
+
+    /**
+     * Fills moves[ply] with the legal moves, the table move first and then
+     * the moves that caused the most cutoffs so far.
+     *
+     * @return the number of moves
+     */
+    private int orderMoves(Game game, int ply, int tableMove) {
+        if (moves[ply] == null) {
+            moves[ply] = new int[game.getMaxMoves()];
+        }
+        int[] plyMoves = moves[ply];
+        int count = game.getAvailableMoves(plyMoves);
+
+        // Insertion sort by decreasing history score, the table move counting as the best
+        for (int k = 1; k < count; k++) {
+            int move = plyMoves[k];
+            int value = move == tableMove ? Integer.MAX_VALUE : history[move];
+            int j = k - 1;
+            while (j >= 0 && (plyMoves[j] == tableMove ? Integer.MAX_VALUE : history[plyMoves[j]]) < value) {
+                plyMoves[j + 1] = plyMoves[j];
+                j--;
+            }
+            plyMoves[j + 1] = move;
+        }
+        return count;
+    }
+
+    /**
+     * Scores a position by its open lines: every line free of the opponent's symbols is
+     * worth more the more symbols it holds. Lines holding both symbols are dead and worth 0.
+     *
+     * @return the score for the player to move
+     */
+    private int evaluate(Game game) {
+        int score = 0; // For O
+        for (int k = game.getLines().getLineCount() - 1; k >= 0; k--) {
+            int xCount = game.getXCount(k);
+            int oCount = game.getOCount(k);
+            if (xCount == 0) score += lineValue[oCount];
+            else if (oCount == 0) score -= lineValue[xCount];
+        }
+        return game.nextBoxSymbol() == BoxSymbol.O ? score : -score;
+    }
+
+    /**
+     * Builds the line values and the move buffers when the game changes.
+     */
+    private void prepare(Game game) {
+        if (preparedGame != null && preparedGame.getClass() == game.getClass() && preparedGame.getRows() == game.getRows()
+                && preparedGame.getColumns() == game.getColumns() && preparedGame.getNumberWin() == game.getNumberWin()) {
+            return;
+        }
+        preparedGame = game;
+        int boxes = game.getRows() * game.getColumns();
+        int numberWin = game.getNumberWin();
+
+        // An open line is worth 4 times more with each extra symbol
+        lineValue = new int[numberWin + 1];
+        for (int n = 1; n < numberWin; n++) {
+            lineValue[n] = 1 << Math.min(2 * (n - 1), 12);
+        }
+
+        history = new int[boxes];
+        // The buffer of a ply is allocated the first time the search gets that deep
+        moves = new int[boxes + 1][];
+        moves[0] = new int[game.getMaxMoves()];
+        table.clear();
+        rootBest = -1;
+    }
+}
@@ -0,0 +1,265 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Offline analysis of a file of positions: the best move and the value of every position,
+ * searched in parallel by computers with a fixed thinking time.
+ *
+ * Each input line holds a game and a board: ROWSxCOLUMNS/WIN or C4[:ROWSxCOLUMNS/WIN], then one character per box,
+ * X, O or . for an empty box, row by row from the top (the boxes numbered as in the game), for example
+ * 3x3/3 X.O.X....
+ * Blank lines and lines starting with # are skipped. Each position gives one output line, in the order
+ * of the input: the game and board, then the best move (from 1), the value of the position for the
+ * player to move (from -1, lost, to 1, won) and the search that chose the move. Finished games give
+ * the result instead, and invalid lines ERROR with the reason.
+ *
+ * The input is read as the analysis goes: only a few positions per thread are waiting at any time,
+ * so the memory used does not depend on the size of the input.
+ */
+public class BatchAnalysis {
+    // Positions read ahead for each thread
+    private static final int POSITIONS_PER_THREAD = 4;
+
+    private final String spec; // Settings of the computers, STRATEGY:ms[:easy]
+    private final int threads;
+
+    // One computer per worker thread, without opening book or forced moves so that every move has a value
+    private final ThreadLocal<Computer> computers;
+
+    /**
+     * Entry point of the analysis.
+     *
+     * @param args expected as: input output [STRATEGY:ms[:easy]] [threads]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java BatchAnalysis <input> <output> [STRATEGY:ms[:easy]] [threads]");
+            System.out.println("  Each input line: ROWSxCOLUMNS/WIN or C4[:ROWSxCOLUMNS/WIN], then the board, e.g. 3x3/3 X.O.X....");
+            return;
+        }
+        String spec = args.length > 2 ? args[2] : "ALPHA_BETA:100";
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        new BatchAnalysis(spec, threads).run(Path.of(args[0]), Path.of(args[1]));
+    }
+
+    /**
+     * Creates an analysis.
+     *
+     * @param spec settings of the computers, STRATEGY:ms[:easy], ms being the time given to each position
+     * @param threads number of positions searched at the same time
+     */
+    public BatchAnalysis(String spec, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The analysis needs at least 1 thread.");
+        }
+        Tournament.parse(spec); // Fail early on invalid settings
+        this.spec = spec;
+        this.threads = threads;
+        this.computers = ThreadLocal.withInitial(() -> {
+            Computer computer = Tournament.parse(spec);
+            computer.setOpeningBook(false);
+            computer.setTimeManagement(false);
+            computer.setForcedMoves(false);
+            return computer;
+        });
+    }
+
+    /**
+     * Analyses every position of the input file and writes the results to the output file.
+     */
+    public void run(Path input, Path output) throws IOException {
+        System.out.println("Analysing " + input + " with " + spec + " on " + threads + " threads");
+        long startTime = System.nanoTime();
+        long positions = 0;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        // Results not written yet, in the order of the input
+        ArrayDeque<Future<String>> pending = new ArrayDeque<>();
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String position = line.trim();
+                if (position.isEmpty() || position.startsWith("#")) continue;
+
+                // Wait for the oldest position when enough are in progress
+                if (pending.size() >= POSITIONS_PER_THREAD * threads) {
+                    write(out, pending.poll());
+                }
+                pending.add(pool.submit(() -> analyse(position)));
+                positions++;
+            }
+            while (!pending.isEmpty()) {
+                write(out, pending.poll());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("%d positions in %.1f s: %.1f positions per second, written to %s%n", positions, seconds, positions / seconds, output);
+    }
+
+    private static void write(BufferedWriter out, Future<String> result) throws IOException {
+        try {
+            out.write(result.get());
+            out.newLine();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Analysis interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The analysis of a position failed", e.getCause());
+        }
+    }
+
+    /**
+     * Analyses one input line. An invalid line or a failed search gives an ERROR line.
+     *
+     * @return the output line
+     */
+    private String analyse(String line) {
+        String[] words = line.split("\\s+");
+        try {
+            if (words.length != 2) {
+                throw new IllegalArgumentException("Expected a game and a board");
+            }
+            Game game = position(words[0], words[1]);
+            if (game.getGameState() != GameState.PLAYING) {
+                return words[0] + " " + words[1] + " - " + game.getGameState();
+            }
+            Computer computer = computers.get();
+            int move = computer.chooseMove(game);
+            SearchStats stats = computer.getLastStats();
+            return String.format(Locale.ROOT, "%s %s %d %.3f %s", words[0], words[1], move + 1, stats.getValue(), stats.getSource());
+        } catch (IllegalArgumentException e) {
+            return line + " ERROR " + e.getMessage();
+        } catch (RuntimeException e) {
+            // Any other failure only costs its own line, the batch goes on
+            return line + " ERROR " + e;
+        }
+    }
+
+    /**
+     * Creates a game holding the given board, by playing its symbols in an order that alternates X and O.
+     *
+     * @param gameName ROWSxCOLUMNS/WIN or C4[:ROWSxCOLUMNS/WIN]
+     * @param board one character per box, X, O or ., row by row from the top
+     * @return the game, which may already be over
+     * @throws IllegalArgumentException if the board can't be reached in a game
+     */
+    static Game position(String gameName, String board) {
+        Game game = Tournament.newGame(gameName);
+        int boxes = game.getRows() * game.getColumns();
+        if (board.length() != boxes) {
+            throw new IllegalArgumentException("The board must have " + boxes + " boxes");
+        }
+        int xCount = 0;
+        int oCount = 0;
+        for (int i = 0; i < boxes; i++) {
+            char c = Character.toUpperCase(board.charAt(i));
+            if (c == 'X') xCount++;
+            else if (c == 'O') oCount++;
+            else if (c != '.') throw new IllegalArgumentException("Invalid box: " + c);
+        }
+        if (xCount != oCount && xCount != oCount + 1) {
+            throw new IllegalArgumentException("X plays first, so there must be as many X as O or one more");
+        }
+
+        int[] moves = game instanceof C4 ? columnOrder(game, board) : boxOrder(board, xCount + oCount);
+        // A board holding a line is over, whenever the line was completed
+        for (int k = 0; k < moves.length && game.getGameState() == GameState.PLAYING; k++) {
+            game.play(moves[k]);
+        }
+        return game;
+    }
+
+    /**
+     * Orders the boxes of a Tic Tac Toe board: the first X, the first O, the second X...
+     */
+    private static int[] boxOrder(String board, int symbols) {
+        int[] moves = new int[symbols];
+        int x = 0;
+        int o = 1;
+        for (int i = 0; i < board.length(); i++) {
+            char c = Character.toUpperCase(board.charAt(i));
+            if (c == 'X') {
+                moves[x] = i;
+                x += 2;
+            } else if (c == 'O') {
+                moves[o] = i;
+                o += 2;
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Orders the columns played to build a Connect 4 board, each piece on top of the one below it
+     * and X and O alternating. Depth-first search over the columns, remembering the column heights
+     * that lead nowhere.
+     *
+     * @throws IllegalArgumentException if a piece floats or no order alternates X and O
+     */
+    private static int[] columnOrder(Game game, String board) {
+        int rows = game.getRows();
+        int columns = game.getColumns();
+        // Symbols of each column from the bottom
+        char[][] stacks = new char[columns][];
+        int symbols = 0;
+        for (int col = 0; col < columns; col++) {
+            StringBuilder stack = new StringBuilder();
+            for (int row = rows - 1; row >= 0; row--) {
+                char c = Character.toUpperCase(board.charAt(row * columns + col));
+                if (c == '.') {
+                    for (int above = row - 1; above >= 0; above--) {
+                        if (board.charAt(above * columns + col) != '.') {
+                            throw new IllegalArgumentException("A piece floats in column " + (col + 1));
+                        }
+                    }
+                    break;
+                }
+                stack.append(c);
+            }
+            stacks[col] = stack.toString().toCharArray();
+            symbols += stacks[col].length;
+        }
+
+        int[] moves = new int[symbols];
+        if (!columnOrder(stacks, new int[columns], 0, moves, new HashSet<>())) {
+            throw new IllegalArgumentException("No order of the moves alternates X and O");
+        }
+        return moves;
+    }
+
+    private static boolean columnOrder(char[][] stacks, int[] heights, int round, int[] moves, Set<String> deadEnds) {
+        if (round == moves.length) return true;
+        String key = Arrays.toString(heights);
+        if (deadEnds.contains(key)) return false;
+
+        char symbol = round % 2 == 0 ? 'X' : 'O';
+        for (int col = 0; col < stacks.length; col++) {
+            if (heights[col] < stacks[col].length && stacks[col][heights[col]] == symbol) {
+                moves[round] = col;
+                heights[col]++;
+                boolean found = columnOrder(stacks, heights, round + 1, moves, deadEnds);
+                heights[col]--;
+                if (found) return true;
+            }
+        }
+        deadEnds.add(key);
+        return false;
+    }
+}
@@ -1,84 +1,347 @@
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
 
 /**
- * Represents a Connect 4 game.
- * 
- * The board is stored as a list of columns, each column being a list of 
- * BoxSymbol (X, O, or null for empty).
- * 
- * Note: In this implementation, the first index is the column number, 
- * and the second is the row number, with index 0 at the top left.
+ * Represents a Connect 4 game, on the standard 6x7 board or any other size and number to connect.
+ *
+ * The board is stored as two bitboards (one per player) plus the height of each column.
+ * Each column uses (rows + 1) bits: bit 0 is the bottom cell and the extra top bit
+ * is always empty, so that shifted lines never wrap from one column into the next.
+ * When the (rows + 1) * columns bits fit in a long, each bitboard is a single long, as C4Solver needs.
+ * Bigger boards (9x9 connect 5, for example) use arrays of longs, on which the lines are followed
+ * from the piece just played instead of shifting the whole board.
+ *
+ * Note: Linear indexes used by boxSymbolAt follow the other games,
+ * with index 0 at the top left and index = row * columns + col.
  */
 public class C4 extends Game {
-    private ArrayList<ArrayList<BoxSymbol>> board;
+    // Biggest board: the heights are bytes
+    public static final int MAX_SIZE = 127;
+
+    private long xBoard; // Bits of the cells holding an X
+    private long oBoard; // Bits of the cells holding an O
+    private byte[] heights; // Number of pieces in each column
+
+    // Bitboards of the boards that don't fit in a long: bit b is bit b % 64 of word b / 64, null otherwise
+    private long[] xWords;
+    private long[] oWords;
+
+    // Number of bits used by one column (rows + 1 sentinel bit)
+    private final int height;
+
+    // Scratch copies used by simulate() on multi-word boards: the bitboards, the heights and the open columns
+    private long[] playoutPlayer;
+    private long[] playoutOpponent;
+    private int[] playoutHeights;
+    private int[] playoutOpen;
 
     /**
      * Constructor: Sets up a standard Connect 4 game (6 rows × 7 columns).
      */
     public C4() {
-        this.rows = 6;
-        this.columns = 7;
+        this(6, 7, 4);
+    }
+
+    /**
+     * Constructor allowing custom board size and winning condition.
+     *
+     * @param rows Number of rows on the board (1 to MAX_SIZE)
+     * @param columns Number of columns on the board (1 to MAX_SIZE)
+     * @param numberWin Number of consecutive pieces needed to win, at most the larger of rows and columns
+     */
+    public C4(int rows, int columns, int numberWin) {
+        if (rows < 1 || rows > MAX_SIZE || columns < 1 || columns > MAX_SIZE) {
+            throw new IllegalArgumentException("Connect 4 boards have 1 to " + MAX_SIZE + " rows and columns: " + rows + "x" + columns);
+        }
+        if (numberWin < 1 || (numberWin > rows && numberWin > columns)) {
+            throw new IllegalArgumentException("The game is impossible to win! You can't get " + numberWin +
+                    " in a row in a " + rows + "x" + columns + " grid.");
+        }
+        this.rows = rows;
+        this.columns = columns;
         this.gameState = GameState.PLAYING;
         this.round = 0;
-        this.numberWin = 4;
-        this.board = new ArrayList<ArrayList<BoxSymbol>>(this.columns);
-
-        // Initialize each column with rows filled with "null" to help toString.
-        for (int i = 0; i < this.columns; i++) {
-            this.board.add(new ArrayList<BoxSymbol>(this.rows));
-            for (int j = 0; j < this.rows; j++) {
-                this.board.get(i).add(null);
-            }
+        this.numberWin = numberWin;
+        this.height = this.rows + 1;
+        this.heights = new byte[this.columns];
+        this.history = new int[this.rows * this.columns];
+        if (height * columns > Long.SIZE) {
+            xWords = new long[(height * columns + Long.SIZE - 1) / Long.SIZE];
+            oWords = new long[xWords.length];
+        }
+        initHashing(() -> symmetries(rows, columns));
+        initLines();
+    }
+
+    /**
+     * Copy constructor used by clone(): shares the tables of the other game and copies its board.
+     */
+    private C4(C4 other) {
+        copyState(other);
+        this.height = other.height;
+        this.heights = other.heights.clone();
+        this.xBoard = other.xBoard;
+        this.oBoard = other.oBoard;
+        if (other.xWords != null) {
+            this.xWords = other.xWords.clone();
+            this.oWords = other.oWords.clone();
+        }
+    }
+
+    /**
+     * Builds the symmetries of a Connect 4 board: the identity and the left-right mirror.
+     * Gravity rules out any other symmetry.
+     *
+     * @param rows Number of rows on the board
+     * @param columns Number of columns on the board
+     * @return one permutation of the boxes per symmetry, starting with the identity
+     */
+    private static int[][] symmetries(int rows, int columns) {
+        int[][] symmetries = new int[2][rows * columns];
+        for (int i = 0; i < rows * columns; i++) {
+            symmetries[0][i] = i;
+            symmetries[1][i] = i - i % columns + (columns - 1 - i % columns);
         }
+        return symmetries;
     }
 
+    /**
+     * Moves are columns in Connect 4, so the mirror sends column col to column columns - 1 - col.
+     */
+    @Override
+    public int symmetricMove(int s, int col) {
+        return s == 0 ? col : columns - 1 - col;
+    }
+
+    // True when each bitboard is a single long, the only boards C4Solver solves
+    public boolean isSingleWord() {return xWords == null;}
+
+    // Bitboards of each player when they are single longs, for C4Solver
+    public long getXBoard() {return xBoard;}
+
+    public long getOBoard() {return oBoard;}
+
     /**
      * Finds the next available row index in the given column where a piece can be placed.
-     * Returns the index from the top (0 = top row).
-     * 
+     * Returns the index from the top (0 = top row), or -1 if the column is full.
+     *
      * @param col the column index
      * @return row index where the piece will fall
      */
     public int getColHeight(int col) {
-        int row = 0;
-        // Count how many empty slots remain in this column
-        for (BoxSymbol symbol : board.get(col)) {
-            if (symbol == null) row++;
-        }
-        return row - 1; // Return the actual position index for the piece
+        return rows - 1 - heights[col];
     }
 
     /**
      * Plays a move in the specified column for the current player.
      * Updates the game state afterward.
-     * 
+     *
      * @param col the column index to play in
      */
     public void play(int col) {
-        int row = getColHeight(col);
-        board.get(col).set(row, this.nextBoxSymbol()); // Drop piece into the column
-        update(row * columns + col); // Convert (row, col) to single index and check for win/draw
-        
+        int index = col * height + heights[col];
+        int i = getColHeight(col) * columns + col; // Linear index of the box the piece falls in
+        BoxSymbol currentSymbol = this.nextBoxSymbol();
+        toggleHash(i, currentSymbol);
+        addToLines(i, currentSymbol); // Line counts feed the evaluation, wins are found on the bitboards
+        heights[col]++;
+        history[round] = col;
+
+        // Drop piece into the column and check the board of the player who just played
+        boolean won;
+        if (xWords != null) {
+            long[] words = currentSymbol == BoxSymbol.X ? xWords : oWords;
+            words[index >>> 6] |= 1L << index;
+            won = isWinningAt(words, index);
+        } else if (currentSymbol == BoxSymbol.X) {
+            xBoard |= 1L << index;
+            won = isWinning(xBoard);
+        } else {
+            oBoard |= 1L << index;
+            won = isWinning(oBoard);
+        }
+        round++;
+
+        if (won) {
+            gameState = currentSymbol == BoxSymbol.X ? GameState.X_WIN : GameState.O_WIN;
+        } else if (round >= rows * columns) {
+            gameState = GameState.DRAW;
+        }
     }
 
     /**
-     * Creates a deep copy of the current game state for simulation purposes.
+     * Takes back the top piece of the given column.
+     *
+     * @param col the column of the last move played
      */
-    public C4 clone() {
-        C4 copy = new C4();
-        copy.round = this.round;
-        copy.gameState = this.gameState;
-        copy.board.clear();
-        for (ArrayList<BoxSymbol> row : this.board) {
-            ArrayList<BoxSymbol> newRow = new ArrayList<>(row);
-            copy.board.add(newRow);
+    public void undo(int col) {
+        heights[col]--;
+        int index = col * height + heights[col];
+        if (xWords != null) {
+            xWords[index >>> 6] &= ~(1L << index);
+            oWords[index >>> 6] &= ~(1L << index);
+        } else {
+            xBoard &= ~(1L << index);
+            oBoard &= ~(1L << index);
         }
-        return copy;
+        round--;
+        int i = getColHeight(col) * columns + col;
+        toggleHash(i, nextBoxSymbol());
+        removeFromLines(i, nextBoxSymbol());
+        gameState = GameState.PLAYING;
+    }
+
+    /**
+     * Plays a random game from the current state on local copies of the bitboards,
+     * leaving the game untouched. Each move is picked uniformly among the open columns,
+     * which are kept in a bitmask, and lands on the lowest empty bit of its column.
+     *
+     * @param rng the random number generator used to pick the moves
+     * @return 1 if O wins, -1 if X wins, 0 for draw
+     */
+    @Override
+    public int simulate(RandomGenerator rng) {
+        if (gameState != GameState.PLAYING) return result();
+        if (xWords != null) return simulateWords(rng);
+        boolean xToPlay = nextBoxSymbol() == BoxSymbol.X;
+        long player = xToPlay ? xBoard : oBoard; // Pieces of the player to move
+        long opponent = xToPlay ? oBoard : xBoard;
+        long mask = xBoard | oBoard;
+        int open = 0; // Bit c is set when column c is not full
+        for (int c = 0; c < columns; c++) {
+            if (heights[c] < rows) open |= 1 << c;
+        }
+
+        while (open != 0) {
+            // Pick the n-th open column
+            int columnsLeft = open;
+            for (int n = rng.nextInt(Integer.bitCount(open)); n > 0; n--) {
+                columnsLeft &= columnsLeft - 1;
+            }
+            int col = Integer.numberOfTrailingZeros(columnsLeft);
+
+            // Adding the bottom bit of the column to the mask carries up to its lowest empty bit
+            long columnMask = ((1L << rows) - 1) << (col * height);
+            long bit = (mask + (1L << (col * height))) & columnMask;
+            mask |= bit;
+            player |= bit;
+            if (isWinning(player)) {
+                return xToPlay ? -1 : 1;
+            }
+            if ((mask & columnMask) == columnMask) {
+                open &= ~(1 << col);
+            }
+
+            long swap = player;
+            player = opponent;
+            opponent = swap;
+            xToPlay = !xToPlay;
+        }
+        return 0;
+    }
+
+    /**
+     * simulate() on multi-word boards: the open columns are kept in an array from which a full column
+     * is removed by swapping it with the last one, and the lines are followed from each piece played.
+     */
+    private int simulateWords(RandomGenerator rng) {
+        if (playoutPlayer == null) {
+            playoutPlayer = new long[xWords.length];
+            playoutOpponent = new long[xWords.length];
+            playoutHeights = new int[columns];
+            playoutOpen = new int[columns];
+        }
+        boolean xToPlay = nextBoxSymbol() == BoxSymbol.X;
+        long[] player = playoutPlayer;
+        long[] opponent = playoutOpponent;
+        System.arraycopy(xToPlay ? xWords : oWords, 0, player, 0, player.length);
+        System.arraycopy(xToPlay ? oWords : xWords, 0, opponent, 0, opponent.length);
+        int open = 0;
+        for (int c = 0; c < columns; c++) {
+            playoutHeights[c] = heights[c];
+            if (heights[c] < rows) playoutOpen[open++] = c;
+        }
+
+        while (open > 0) {
+            int k = rng.nextInt(open);
+            int col = playoutOpen[k];
+            int index = col * height + playoutHeights[col]++;
+            player[index >>> 6] |= 1L << index;
+            if (isWinningAt(player, index)) {
+                return xToPlay ? -1 : 1;
+            }
+            if (playoutHeights[col] == rows) {
+                playoutOpen[k] = playoutOpen[--open];
+            }
+
+            long[] swap = player;
+            player = opponent;
+            opponent = swap;
+            xToPlay = !xToPlay;
+        }
+        return 0;
+    }
+
+    /**
+     * Checks whether a bitboard contains numberWin aligned pieces.
+     * Shifting the board by one step in a direction and and-ing it with itself
+     * keeps only the pieces that continue a line in that direction.
+     * Directions: 1 = vertical, height = horizontal, height - 1 and height + 1 = diagonals.
+     *
+     * @param board the bitboard of one player
+     * @return true if the board holds a winning line
+     */
+    private boolean isWinning(long board) {
+        return isWinning(board, 1) || isWinning(board, height)
+                || isWinning(board, height - 1) || isWinning(board, height + 1);
+    }
+
+    private boolean isWinning(long board, int direction) {
+        long aligned = board;
+        for (int k = 1; k < numberWin && aligned != 0; k++) {
+            // A shift of 64 bits or more would leave the board unchanged instead of empty
+            if (k * direction >= Long.SIZE) return false;
+            aligned &= board >>> (k * direction);
+        }
+        return aligned != 0;
+    }
+
+    /**
+     * Checks whether the piece at a bit of a multi-word bitboard completes a line of numberWin pieces,
+     * counting the pieces next to it in both ways of each direction. The empty sentinel bits
+     * stop the lines at the top and bottom of the columns.
+     *
+     * @param board the bitboard of the player who just played
+     * @param index the bit of the piece just played
+     * @return true if the piece completes a winning line
+     */
+    private boolean isWinningAt(long[] board, int index) {
+        return lineLength(board, index, 1) >= numberWin || lineLength(board, index, height) >= numberWin
+                || lineLength(board, index, height - 1) >= numberWin || lineLength(board, index, height + 1) >= numberWin;
+    }
+
+    private int lineLength(long[] board, int index, int direction) {
+        int length = 1;
+        int end = columns * height;
+        for (int b = index + direction; b < end && length < numberWin && (board[b >>> 6] & 1L << b) != 0; b += direction) {
+            length++;
+        }
+        for (int b = index - direction; b >= 0 && length < numberWin && (board[b >>> 6] & 1L << b) != 0; b -= direction) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Creates a copy of the current game state for simulation purposes.
+     */
+    public C4 clone() {
+        return new C4(this);
     }
 
      /**
      * Returns the symbol (X, O, or null) at the specified linear index.
-     * 
+     *
      * @param i position in the flattened board (0-based)
      * @throws IllegalArgumentException if the index is outside the board
      */
@@ -88,47 +351,58 @@ public class C4 extends Game {
         }
         int row = i / columns;
         int col = i % columns;
-        return board.get(col).get(row);
+        int index = col * height + rows - 1 - row;
+        if (xWords != null) {
+            if ((xWords[index >>> 6] & 1L << index) != 0) return BoxSymbol.X;
+            if ((oWords[index >>> 6] & 1L << index) != 0) return BoxSymbol.O;
+            return null;
+        }
+        if ((xBoard & 1L << index) != 0) return BoxSymbol.X;
+        if ((oBoard & 1L << index) != 0) return BoxSymbol.O;
+        return null;
     }
 
     /**
      * Checks if a given column is already full (no moves possible there).
      */
     public boolean columnIsFull(int col) {
-        return boxSymbolAt(col) != null;
+        return heights[col] >= rows;
     }
 
     /**
-     * Returns a list of all available (non-full) column indices.
+     * Writes all available (non-full) column indices.
+     *
+     * @param moves array receiving the column indices
+     * @return the number of available columns
      */
-    public ArrayList<Integer> getAvailableMoves() {
-        ArrayList<Integer> availableMoves = new ArrayList<>();
+    public int getAvailableMoves(int[] moves) {
+        int count = 0;
         for (int i = 0; i < columns; i++) {
             if (!columnIsFull(i)) {
-                availableMoves.add(i);
+                moves[count++] = i;
             }
         }
-        return availableMoves;
+        return count;
     }
 
+    // At most one move per column
+    @Override
+    public int getMaxMoves() {return columns;}
+
     /**
      * Resets the game state to start a new game:
      * - Resets the round counter to 0.
      * - Sets the game state back to PLAYING.
-     * - Clears the current board data.
-     * - Initializes the board to prepare for a fresh game.
+     * - Clears both bitboards and the column heights.
      */
     public void reset() {
-        round = 0;
-        gameState = GameState.PLAYING;
-        board.clear();
-
-        // Initialize each column with rows filled with "null" to help toString.
-        for (int i = 0; i < this.columns; i++) {
-            this.board.add(new ArrayList<BoxSymbol>(this.rows));
-            for (int j = 0; j < this.rows; j++) {
-                this.board.get(i).add(null);
-            }
+        super.reset();
+        xBoard = 0;
+        oBoard = 0;
+        if (xWords != null) {
+            Arrays.fill(xWords, 0);
+            Arrays.fill(oWords, 0);
         }
+        heights = new byte[columns];
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,262 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exact solver for the end of Connect 4 games, working directly on the bitboards of C4.
+ * Only boards whose bitboards are single longs are solved, see C4.isSingleWord().
+ *
+ * It is a negamax search with alpha-beta pruning that only keeps two longs per position:
+ * the pieces of the player to move and the mask of all the pieces. The scores follow the
+ * minimax of Computer: a win scores (number of boxes + 1 - round of the winning move) for the
+ * winner, so faster wins score higher, and a draw scores 0.
+ *
+ * Moves are tried center first, starting with the best move stored in the transposition table.
+ * Immediate wins are played at once, and a threat of the opponent must be blocked.
+ */
+public class C4Solver {
+    // Transposition table: 2^20 entries
+    private static final int TABLE_SIZE = 20;
+
+    // Bigger than any score
+    private static final int INFINITY = 1000;
+
+    private final TranspositionTable table = new TranspositionTable(TABLE_SIZE);
+
+    // Set by another thread to stop the search early
+    private final AtomicBoolean stop;
+
+    // Board the solver was prepared for
+    private int rows;
+    private int columns;
+    private int height; // Bits per column
+    private int numberWin;
+    private int boxes;
+    private int[] order; // Columns, center first
+
+    // State of the current search
+    private long deadline;
+    private long nodes;
+    private boolean timeUp;
+    private int bestScore;
+
+    /**
+     * Creates a solver that only stops at its deadline.
+     */
+    public C4Solver() {
+        this(new AtomicBoolean());
+    }
+
+    /**
+     * Creates a solver that also stops as soon as the given flag is set.
+     *
+     * @param stop flag set by another thread to stop the search early
+     */
+    public C4Solver(AtomicBoolean stop) {
+        this.stop = stop;
+    }
+
+    // Getters for the last search
+    public long getNodes() {return nodes;}
+
+    public TranspositionTable getTable() {return table;}
+
+    public int getBestScore() {return bestScore;}
+
+    /**
+     * Solves the position and returns its best move.
+     * The game is only read, the search is done on copies of its bitboards.
+     *
+     * @param game the current game state, which must still be PLAYING and fit in single-long bitboards
+     * @param deadline time (System.nanoTime) at which the search gives up
+     * @return the best move, or -1 if the deadline passed or the search was stopped before the position was solved
+     */
+    public int solve(C4 game, long deadline) {
+        if (!game.isSingleWord()) {
+            throw new IllegalArgumentException("The solver needs a board of at most 64 bits: " + game.getRows() + "x" + game.getColumns());
+        }
+        prepare(game);
+        this.deadline = deadline;
+        this.nodes = 0;
+        this.timeUp = false;
+        table.resetCounters();
+
+        boolean xToPlay = game.nextBoxSymbol() == BoxSymbol.X;
+        long player = xToPlay ? game.getXBoard() : game.getOBoard();
+        long mask = game.getXBoard() | game.getOBoard();
+        int round = game.getRound();
+
+        // A winning move ends the search at once
+        for (int col : order) {
+            long bit = playableBit(mask, col);
+            if (bit != 0 && isWinning(player | bit)) {
+                bestScore = boxes - round;
+                return col;
+            }
+        }
+
+        int alpha = -INFINITY;
+        int bestMove = -1;
+        for (int col : order) {
+            long bit = playableBit(mask, col);
+            if (bit == 0) continue;
+            int score = -negamax(player ^ mask, mask | bit, round + 1, -INFINITY, -alpha);
+            if (timeUp) return -1;
+            if (score > alpha) {
+                alpha = score;
+                bestMove = col;
+            }
+        }
+        bestScore = alpha;
+        return bestMove;
+    }
+
+    /**
+     * Negamax search with alpha-beta pruning.
+     *
+     * @param player pieces of the player to move
+     * @param mask pieces of both players
+     * @param round number of pieces on the board
+     * @param alpha alpha value for pruning
+     * @param beta beta value for pruning
+     * @return score of the position for the player to move
+     */
+    private int negamax(long player, long mask, int round, int alpha, int beta) {
+        // Check the clock once in a while
+        if (++nodes % 4096 == 0 && (stop.get() || System.nanoTime() >= deadline)) {
+            timeUp = true;
+        }
+        if (timeUp) return 0;
+
+        // Columns where a piece would complete a line of the player to move or of the opponent
+        long opponent = player ^ mask;
+        int threats = 0;
+        int forcedColumn = -1;
+        for (int col = 0; col < columns; col++) {
+            long bit = playableBit(mask, col);
+            if (bit == 0) continue;
+            if (isWinning(player | bit)) {
+                return boxes - round;
+            }
+            if (isWinning(opponent | bit)) {
+                threats++;
+                forcedColumn = col;
+            }
+        }
+        if (round + 1 >= boxes) {
+            return 0; // The last box can't win, the game is drawn
+        }
+        if (threats > 1) {
+            return -(boxes - round - 1); // Only one threat can be blocked, the opponent wins next move
+        }
+
+        // The player to move can't win before its next move
+        int max = boxes - round - 2;
+        if (beta > max) {
+            beta = max;
+            if (alpha >= beta) return beta;
+        }
+
+        long key = key(player, mask);
+        long entry = table.probe(key);
+        int tableMove = -1;
+        if (entry != TranspositionTable.MISS) {
+            tableMove = TranspositionTable.move(entry);
+            int score = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT) return score;
+            if (bound == TranspositionTable.LOWER) alpha = Math.max(alpha, score);
+            if (bound == TranspositionTable.UPPER) beta = Math.min(beta, score);
+            if (alpha >= beta) return score;
+        }
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = -1;
+        for (int k = -1; k < columns; k++) {
+            // The table move first, then the others center first, or only the blocking move
+            int col;
+            if (threats == 1) {
+                if (k >= 0) break;
+                col = forcedColumn;
+            } else if (k < 0) {
+                if (tableMove < 0) continue;
+                col = tableMove;
+            } else {
+                col = order[k];
+                if (col == tableMove) continue;
+            }
+            long bit = playableBit(mask, col);
+            if (bit == 0) continue;
+
+            int score = -negamax(opponent, mask | bit, round + 1, -beta, -alpha);
+            if (timeUp) return 0;
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = col;
+            }
+            alpha = Math.max(alpha, score);
+            if (alpha >= beta) break;
+        }
+
+        int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER
+                : bestScore >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(key, 0, bestScore, bound, bestMove);
+        return bestScore;
+    }
+
+    /**
+     * Returns the bit of the lowest empty box of a column, or 0 if the column is full.
+     * Adding the bottom bit of the column to the mask carries up to its lowest empty bit.
+     */
+    private long playableBit(long mask, int col) {
+        long columnMask = ((1L << rows) - 1) << (col * height);
+        return (mask + (1L << (col * height))) & columnMask;
+    }
+
+    /**
+     * Checks whether a bitboard contains numberWin aligned pieces, as in C4.
+     */
+    private boolean isWinning(long board) {
+        return isWinning(board, 1) || isWinning(board, height)
+                || isWinning(board, height - 1) || isWinning(board, height + 1);
+    }
+
+    private boolean isWinning(long board, int direction) {
+        long aligned = board;
+        for (int k = 1; k < numberWin && aligned != 0; k++) {
+            if (k * direction >= Long.SIZE) return false;
+            aligned &= board >>> (k * direction);
+        }
+        return aligned != 0;
+    }
+
+    /**
+     * Key of a position in the transposition table.
+     * player + mask is unique to the position since the mask has a piece under every piece of the player,
+     * its bits are then mixed by a bijection so that the slots (the low bits) are spread evenly.
+     */
+    private static long key(long player, long mask) {
+        long key = (player + mask) * 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 32);
+    }
+
+    /**
+     * Sets up the board size and the move order when the game changes.
+     */
+    private void prepare(C4 game) {
+        if (order != null && rows == game.getRows() && columns == game.getColumns() && numberWin == game.getNumberWin()) {
+            return;
+        }
+        rows = game.getRows();
+        columns = game.getColumns();
+        height = rows + 1;
+        numberWin = game.getNumberWin();
+        boxes = rows * columns;
+
+        // Center column first, then alternating left and right of it
+        order = new int[columns];
+        for (int k = 0; k < columns; k++) {
+            order[k] = columns / 2 + (k % 2 == 0 ? k / 2 : -(k + 1) / 2);
+        }
+        table.clear();
+    }
+}
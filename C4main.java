@@ -1,10 +1,28 @@
 public class C4main {
-    // Entry point of the Connect 4 game application
+    /**
+     * The entry point for the Connect 4 game.
+     * It attempts to read a custom board size and win condition from command-line arguments.
+     * If invalid or no arguments are provided, it plays the standard 6x7 game with 4 in a row to win.
+     *
+     * @param args command-line arguments expected as: rows columns numberToWin
+     */
     public static void main(String[] args) {
-        C4 game = new C4();
+        C4 game;
+        if (args.length == 0) {
+            game = new C4();
+        } else {
+            try {
+                // Parse command line arguments for rows, columns, and winning line length
+                game = new C4(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            } catch (Exception e) {
+                // Missing or wrong arguments, or a game that can't be won: fall back to the standard game
+                System.out.println("Invalid custom arguments given (" + e.getMessage() + "). A standard game will be generated.");
+                game = new C4();
+            }
+        }
 
         // Launch the game using the Main class method,
         // passing the created game instance and the number of players
         Main.launchGame(game, Main.getNumberOfPlayers());        
     }
-}
\ No newline at end of file
+}
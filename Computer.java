@@ -1,47 +1,560 @@
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.random.RandomGenerator;
 
 public class Computer extends Player {
+    // Default settings of new computers, changed from the menu
+
     // Time in ms given for the AI to think
     private static int AIdiff = 100;
 
     // Boolean to enable/disable minimax algorithm
     private static boolean difficultAI = true;
+
+    // Number of threads used by the Monte Carlo search
+    private static int threads = Runtime.getRuntime().availableProcessors();
+
+    // Search used when the board is too big for perfect play
+    private static SearchStrategy strategy = SearchStrategy.ALPHA_BETA;
+
+    // Boolean to enable/disable searching during the opponent's turn
+    private static boolean pondering = true;
+
+    // Worker threads shared by every Computer, created when first needed
+    private static ExecutorService workers;
+
+    // Settings of this computer
+    private final int thinkingTime;
+    private final boolean perfectPlay;
+    private final int searchThreads;
+    private final SearchStrategy searchStrategy;
+    private boolean verbose = true; // Print each move played
+    private boolean openingBook = true; // Play the moves of the opening book when there is one
+    private boolean timeManagement = true; // Share the thinking time between the moves, see TimeManager
+    private boolean forcedMoves = true; // Play the forced moves without searching, see forcedMove()
+    private final boolean ponder; // Search during the opponent's turn, see startPondering()
+
+    // Set by another thread to stop the searches of this computer early, swapped with the searches in takeSearches()
+    private AtomicBoolean stop = new AtomicBoolean();
+
+    // Time of each move, given from a budget for the whole game
+    private final TimeManager timeManager;
+
+    // Time in ms given to the last move
+    private int moveTime;
+
+    // Background searches of this computer, created on first use
+    private Ponderer ponderer;
+
+    // Search that chose the last move, and the statistics of that move
+    private SearchStats.Source source;
+    private SearchStats lastStats;
+
+    // Number of playouts of the last flat Monte Carlo search
+    private long playouts;
+
+    // Value of the position for the player to move found by the last minimax and flat Monte Carlo searches, from -1 to 1
+    private int minimaxValue;
+    private double monteCarloValue;
+
+    // Random number generator of this computer's single-threaded searches
+    private final SplittableRandom random = new SplittableRandom();
+
+    // Tree search of this computer, its node arena is allocated on first use
+    private MonteCarloTreeSearch treeSearch;
+
+    // Alpha-beta search of this computer, created on first use
+    private AlphaBetaSearch alphaBetaSearch;
+
+    // Connect 4 endgame solver of this computer, created on first use
+    private C4Solver c4Solver;
+
+    // Threat-space search of this computer for big Tic Tac Toe boards, created on first use
+    private ThreatSearch threatSearch;
+
+    // Share of the thinking time given to the threat-space search: 1 / THREAT_SHARE
+    private static final int THREAT_SHARE = 4;
+
+    // Playouts of the flat Monte Carlo search between two checks of the best move
+    private static final int DECIDED_CHECK = 512;
+
+    // Minimax tries to solve bigger boards once this few boxes are left empty
+    private static final int SOLVER_EMPTY_BOXES = 20;
+
+    // Transposition table of the minimax search: 2^20 entries, allocated on first use
+    private static final int TABLE_SIZE = 20;
+    private TranspositionTable table;
+
+    // Bigger than any minimax score
+    private static final int INFINITY = 1000000;
+
+    // Moves buffer of each ply of the minimax search, from its root, and the round of that root
+    private int[][] minimaxMoves;
+    private int minimaxRound;
+
+    // State of the current minimax search: when it must stop and how many nodes were searched
+    private long deadline;
+    private int nodes;
+    private boolean timeUp;
     
+    /**
+     * Creates a computer with the current default settings.
+     */
+    public Computer() {
+        this(strategy, AIdiff, difficultAI, threads, pondering);
+    }
+
+    /**
+     * Creates a computer with its own settings, for example to make two different AIs play each other.
+     *
+     * @param strategy Search used when the board is too big for perfect play
+     * @param thinkingTime Time in ms given to the AI to think (1 to 10000)
+     * @param perfectPlay True to use minimax on small boards and close to the end of the game
+     * @param threads Number of threads used by the Monte Carlo search (1 to 256)
+     */
+    public Computer(SearchStrategy strategy, int thinkingTime, boolean perfectPlay, int threads) {
+        this(strategy, thinkingTime, perfectPlay, threads, false);
+    }
+
+    /**
+     * Creates a computer with its own settings, which may search during the opponent's turn.
+     *
+     * @param strategy Search used when the board is too big for perfect play
+     * @param thinkingTime Time in ms given to the AI to think (1 to 10000)
+     * @param perfectPlay True to use minimax on small boards and close to the end of the game
+     * @param threads Number of threads used by the Monte Carlo search (1 to 256)
+     * @param ponder True to search the answers to the opponent's moves during the opponent's turn
+     */
+    public Computer(SearchStrategy strategy, int thinkingTime, boolean perfectPlay, int threads, boolean ponder) {
+        checkAIdiff(thinkingTime);
+        checkThreads(threads);
+        this.searchStrategy = strategy;
+        this.thinkingTime = thinkingTime;
+        this.timeManager = new TimeManager(thinkingTime);
+        this.perfectPlay = perfectPlay;
+        this.searchThreads = threads;
+        this.ponder = ponder;
+    }
+
     // Getters
     public static int getAIdiff() {return AIdiff;}
 
     public static boolean getDifficultAI() {return difficultAI;}
 
+    public static int getThreads() {return threads;}
+
+    public static SearchStrategy getStrategy() {return strategy;}
+
+    public static boolean getPondering() {return pondering;}
+
+    public int getThinkingTime() {return thinkingTime;}
+
+    public boolean isPerfectPlay() {return perfectPlay;}
+
+    public SearchStrategy getSearchStrategy() {return searchStrategy;}
+
     // Setter
+    public void setVerbose(boolean verbose) {this.verbose = verbose;}
+
+    public void setOpeningBook(boolean openingBook) {this.openingBook = openingBook;}
+
+    // False to give every move the same thinking time, for example to analyse positions
+    public void setTimeManagement(boolean timeManagement) {this.timeManagement = timeManagement;}
+
+    // False to search the forced moves too, so that every move gets a value, for example to analyse positions
+    public void setForcedMoves(boolean forcedMoves) {this.forcedMoves = forcedMoves;}
+
     public static void setAIdiff(int newAIdiff) {
+        checkAIdiff(newAIdiff);
+        System.out.println("AI thinking time has been changed from " + AIdiff + " to " + newAIdiff);
+        AIdiff = newAIdiff;
+    }
+
+    public static void setDifficultAI(boolean bool) {difficultAI = bool;}
+
+    public static void setPondering(boolean bool) {pondering = bool;}
+
+    public static void setStrategy(SearchStrategy newStrategy) {
+        System.out.println("AI search has been changed from " + strategy + " to " + newStrategy);
+        strategy = newStrategy;
+    }
+
+    public static void setThreads(int newThreads) {
+        checkThreads(newThreads);
+        System.out.println("AI threads have been changed from " + threads + " to " + newThreads);
+        threads = newThreads;
+    }
+
+    private static void checkAIdiff(int newAIdiff) {
         if (newAIdiff < 1) {
             throw new IllegalArgumentException("AI thinking time can't be smaller than 1 ms.");
         } else if (newAIdiff > 10000) {
             throw new IllegalArgumentException("AI thinking time can't be bigger than 10000 ms (10 s)");
         }
-        System.out.println("AI thinking time has been changed from " + AIdiff + " to " + newAIdiff);
-        AIdiff = newAIdiff;
     }
 
-    public static void setDifficultAI(boolean bool) {difficultAI = bool;}
+    private static void checkThreads(int newThreads) {
+        if (newThreads < 1) {
+            throw new IllegalArgumentException("The AI needs at least 1 thread.");
+        } else if (newThreads > 256) {
+            throw new IllegalArgumentException("The AI can't use more than 256 threads.");
+        }
+    }
 
     /**
      * Main method for the computer player to decide and make a move.
-     * Chooses between Minimax and Monte Carlo methods depending on game size.
-     * 
+     *
      * @param game The current game instance (TTT or C4)
      */
     public void play(Game game) {
-        // For small boards, use Minimax for perfect play
-        if (game.getRows()*game.getColumns() <= 16 && game instanceof TTT && difficultAI) {
-            int move = findBestMoveMinimax(game, 0);
+        int move = chooseMove(game);
+        if (verbose) {
             System.out.println("\n" + mySymbol + " to play: " + (move + 1));
-            game.play(move);
-        } else {
+        }
+        game.play(move);
+    }
+
+    /**
+     * Decides the move to play without playing it, and records its statistics,
+     * see getLastStats() and MoveEvent.
+     *
+     * @param game The current game instance (TTT or C4), which must still be PLAYING
+     * @return the chosen move
+     */
+    public int chooseMove(Game game) {
+        MoveEvent event = new MoveEvent();
+        event.begin();
+        long startNanos = System.nanoTime();
+        int move = searchMove(game);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        timeManager.spent(elapsedNanos);
+        lastStats = collectStats(game, move, elapsedNanos);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.game = game.getClass().getSimpleName() + " " + game.getRows() + "x" + game.getColumns() + "/" + game.getNumberWin();
+            event.source = lastStats.getSource().name();
+            event.move = move;
+            event.value = lastStats.getValue();
+            event.round = lastStats.getRound();
+            event.thinkingTime = moveTime;
+            event.nodes = lastStats.getNodes();
+            event.playouts = lastStats.getPlayouts();
+            event.depth = lastStats.getDepth();
+            event.tableProbes = lastStats.getTableProbes();
+            event.tableHits = lastStats.getTableHits();
+            event.reusedVisits = lastStats.getReusedVisits();
+            event.commit();
+        }
+        return move;
+    }
+
+    /**
+     * Plays the answer found while pondering, the move of the opening book or tablebase or a forced move if there is one,
+     * otherwise chooses between Minimax and Monte Carlo methods depending on game size.
+     * Sets source to the search that chose the move.
+     */
+    private int searchMove(Game game) {
+        long startTime = System.nanoTime();
+        long moveNanos = timeManagement ? timeManager.allocate(game) : thinkingTime * 1_000_000L;
+        moveTime = (int) (moveNanos / 1_000_000);
+        int boxes = game.getRows() * game.getColumns();
+        int move = -1;
+
+        if (ponderer != null) {
+            // The answer may have been found during the opponent's turn
+            ponderer.stop();
+            move = ponderer.answer(game);
+            source = SearchStats.Source.PONDER;
+            if (move >= 0) return move;
+            if (ponderer.wasSearching(game)) {
+                // Go on with the unfinished search of this position: its tree, table and best move so far
+                takeSearches(ponderer.getComputer());
+            }
+        }
+
+        if (perfectPlay && openingBook) {
+            // Precomputed moves of the first rounds, see OpeningBook
+            OpeningBook book = OpeningBook.forGame(game);
+            if (book != null) {
+                move = book.lookup(game);
+                source = SearchStats.Source.BOOK;
+                if (move >= 0) return move;
+            }
+        }
+
+        if (perfectPlay && game instanceof TTT && boxes <= Tablebase.MAX_BOXES) {
+            // Perfect moves of small boards solved offline, see Tablebase
+            Tablebase tablebase = Tablebase.forGame(game);
+            if (tablebase != null) {
+                move = tablebase.bestMove(game);
+                source = SearchStats.Source.TABLEBASE;
+                if (move >= 0) return move;
+            }
+        }
+
+        move = forcedMoves ? forcedMove(game) : -1;
+        if (move >= 0) {
+            source = SearchStats.Source.FORCED;
+            return move;
+        }
+
+        if (perfectPlay && game instanceof TTT && boxes <= 16) {
+            // For small boards, use Minimax for perfect play
+            move = findBestMoveMinimax(game, Long.MAX_VALUE);
+            source = SearchStats.Source.MINIMAX;
+        } else if (perfectPlay && game instanceof C4 && ((C4) game).isSingleWord() && boxes - game.getRound() <= c4SolverEmptyBoxes(moveTime)) {
+            // Close to the end of Connect 4 on single-long bitboards, solve the position with half of the time
+            if (c4Solver == null) {
+                c4Solver = new C4Solver(stop);
+            }
+            move = c4Solver.solve((C4) game, startTime + moveNanos / 2);
+            source = SearchStats.Source.C4_SOLVER;
+        } else if (perfectPlay && !(game instanceof C4) && boxes - game.getRound() <= SOLVER_EMPTY_BOXES) {
+            // Close to the end of bigger games, try to solve the position with half of the time
+            move = findBestMoveMinimax(game, startTime + moveNanos / 2);
+            source = SearchStats.Source.MINIMAX;
+        }
+
+        if (move < 0 && perfectPlay && game instanceof TTT && boxes > 16 && game.getNumberWin() >= 4) {
+            // Forced wins and threats to block on big boards, which playouts can't see, with a quarter of the time
+            // counted from now, as a failed endgame minimax may already have used half of it
+            if (threatSearch == null) {
+                threatSearch = new ThreatSearch(stop);
+            }
+            move = threatSearch.search(game, System.nanoTime() + moveNanos / THREAT_SHARE);
+            source = SearchStats.Source.THREAT_SPACE;
+        }
+
+        if (move < 0) {
             // For larger boards (like Connect 4), use Monte Carlo simulations  
-            int move = MonteCarlo(game);
-            System.out.println("\n" + mySymbol + " to play: " + (move + 1));
-            game.play(move);
+            long deadline = startTime + moveNanos;
+            if (searchStrategy == SearchStrategy.ALPHA_BETA) {
+                move = alphaBeta(game, deadline);
+                source = SearchStats.Source.ALPHA_BETA;
+            } else if (searchStrategy == SearchStrategy.MCTS) {
+                move = treeSearch(game, deadline);
+                source = SearchStats.Source.MCTS;
+            } else {
+                move = MonteCarlo(game, deadline);
+                source = SearchStats.Source.MONTE_CARLO;
+            }
+        }
+        return move;
+    }
+
+    /**
+     * Finds a move that needs no search: the only legal move and, with perfect play,
+     * a move winning at once or the only move that stops the opponent from winning at once.
+     * The game is played and undone in place and is left unchanged.
+     *
+     * @param game The current game state
+     * @return the forced move, or -1 if there is a choice
+     */
+    private int forcedMove(Game game) {
+        prepareMinimaxMoves(game, 2);
+        int[] moves = minimaxMoves[0];
+        int count = game.getAvailableMoves(moves);
+        if (count == 1) return moves[0];
+        if (!perfectPlay) return -1;
+
+        // A move that wins at once
+        for (int k = 0; k < count; k++) {
+            game.play(moves[k]);
+            boolean won = game.getGameState() != GameState.PLAYING && game.getGameState() != GameState.DRAW;
+            game.undo(moves[k]);
+            if (won) return moves[k];
+        }
+
+        // The only move after which the opponent can't win at once
+        int[] replies = minimaxMoves[1];
+        int safeMove = -1;
+        for (int k = 0; k < count; k++) {
+            game.play(moves[k]);
+            boolean safe = true;
+            if (game.getGameState() == GameState.PLAYING) {
+                int replyCount = game.getAvailableMoves(replies);
+                for (int r = 0; r < replyCount && safe; r++) {
+                    game.play(replies[r]);
+                    safe = game.getGameState() == GameState.PLAYING || game.getGameState() == GameState.DRAW;
+                    game.undo(replies[r]);
+                }
+            }
+            game.undo(moves[k]);
+            if (safe) {
+                if (safeMove >= 0) return -1;
+                safeMove = moves[k];
+            }
+        }
+        return safeMove;
+    }
+
+    /**
+     * Gathers the statistics of the search that chose the last move.
+     *
+     * @param game The game the move was chosen for, before the move
+     * @param move The chosen move
+     * @param elapsedNanos Time taken to choose the move
+     */
+    private SearchStats collectStats(Game game, int move, long elapsedNanos) {
+        int emptyBoxes = game.getRows() * game.getColumns() - game.getRound();
+        long nodes = 0;
+        long playouts = 0;
+        int depth = 0;
+        double value = Double.NaN;
+        TranspositionTable searchTable = null;
+        long reusedVisits = 0;
+        switch (source) {
+            case MINIMAX:
+                nodes = this.nodes;
+                depth = emptyBoxes;
+                value = minimaxValue;
+                searchTable = table;
+                break;
+            case C4_SOLVER:
+                nodes = c4Solver.getNodes();
+                depth = emptyBoxes;
+                value = Integer.signum(c4Solver.getBestScore());
+                searchTable = c4Solver.getTable();
+                break;
+            case TABLEBASE:
+                depth = Tablebase.forGame(game).distance(game);
+                value = Tablebase.forGame(game).value(game);
+                break;
+            case FORCED:
+                game.play(move);
+                value = game.getGameState() == GameState.PLAYING || game.getGameState() == GameState.DRAW ? Double.NaN : 1;
+                game.undo(move);
+                break;
+            case THREAT_SPACE:
+                nodes = threatSearch.getNodes();
+                value = threatSearch.isWin() ? 1 : Double.NaN;
+                break;
+            case ALPHA_BETA:
+                nodes = alphaBetaSearch.getNodes();
+                depth = alphaBetaSearch.getCompletedDepth();
+                value = alphaBetaSearch.getValue();
+                searchTable = alphaBetaSearch.getTable();
+                break;
+            case MCTS:
+                nodes = treeSearch.getSize();
+                playouts = treeSearch.getIterations();
+                value = treeSearch.getValue();
+                reusedVisits = treeSearch.getReusedVisits();
+                break;
+            case MONTE_CARLO:
+                playouts = this.playouts;
+                value = monteCarloValue;
+                break;
+            default:
+                break;
+        }
+        long probes = searchTable == null ? 0 : searchTable.getProbes();
+        long hits = searchTable == null ? 0 : searchTable.getHits();
+        return new SearchStats(source, move, value, game.getRound(), elapsedNanos, moveTime, nodes, playouts, depth, probes, hits, reusedVisits);
+    }
+
+    // Statistics of the last move chosen, null before the first one
+    public SearchStats getLastStats() {return lastStats;}
+
+    /**
+     * Starts searching the answers to the opponent's moves in the background, if this computer ponders.
+     * The pondering stops when this computer plays or when stopPondering() is called.
+     *
+     * @param game the current game state, with the opponent to move
+     */
+    public void startPondering(Game game) {
+        if (!ponder) return;
+        if (ponderer == null) {
+            Computer background = new Computer(searchStrategy, thinkingTime, perfectPlay, searchThreads);
+            background.setVerbose(false);
+            background.setTimeManagement(false);
+            ponderer = new Ponderer(background);
+        }
+        ponderer.start(game);
+    }
+
+    /**
+     * Stops the background searches, for example when the game ends or is reset.
+     */
+    public void stopPondering() {
+        if (ponderer != null) {
+            ponderer.stop();
+        }
+    }
+
+    /**
+     * Forgets the game this computer was playing: the time saved by its moves and the answers found by pondering.
+     * Used when the computer goes on with someone else's game, see GameServer.
+     */
+    public void forgetGame() {
+        timeManager.reset();
+        if (ponderer != null) {
+            ponderer.reset();
+        }
+    }
+
+    // Stop the searches of this computer from another thread, until resumeSearch() is called
+    void stopSearch() {stop.set(true);}
+
+    void resumeSearch() {stop.set(false);}
+
+    boolean isSearchStopped() {return stop.get();}
+
+    /**
+     * Swaps the searches of this computer, with what they learnt, with those of another computer
+     * with the same settings. The stop flags are swapped too as the searches watch them.
+     * The other computer must not be searching.
+     *
+     * @param other the computer whose searches are taken, the ponderer's one
+     */
+    private void takeSearches(Computer other) {
+        AtomicBoolean otherStop = other.stop;
+        other.stop = stop;
+        stop = otherStop;
+        stop.set(false);
+
+        MonteCarloTreeSearch otherTreeSearch = other.treeSearch;
+        other.treeSearch = treeSearch;
+        treeSearch = otherTreeSearch;
+
+        AlphaBetaSearch otherAlphaBetaSearch = other.alphaBetaSearch;
+        other.alphaBetaSearch = alphaBetaSearch;
+        alphaBetaSearch = otherAlphaBetaSearch;
+
+        C4Solver otherC4Solver = other.c4Solver;
+        other.c4Solver = c4Solver;
+        c4Solver = otherC4Solver;
+
+        ThreatSearch otherThreatSearch = other.threatSearch;
+        other.threatSearch = threatSearch;
+        threatSearch = otherThreatSearch;
+    }
+
+    /**
+     * Number of empty boxes below which the Connect 4 solver is expected to finish in half of the thinking time.
+     * The solving time grows about 10 times for every 4 more empty boxes: measured on a 7x6 board,
+     * 22 empty boxes are solved in less than 50 ms, 26 in less than 500 ms and 30 in a few seconds.
+     *
+     * @param thinkingTime Time in ms given to the move, see TimeManager
+     */
+    static int c4SolverEmptyBoxes(int thinkingTime) {
+        return 16 + (int) (4 * Math.log10(Math.max(1, thinkingTime / 2)));
+    }
+
+    // Number of nodes searched by the last minimax search
+    int getMinimaxNodes() {return nodes;}
+
+    /**
+     * Forgets the positions stored by previous minimax searches.
+     */
+    void clearMinimaxTable() {
+        if (table != null) {
+            table.clear();
         }
     }
 
@@ -49,130 +562,315 @@ public class Computer extends Player {
      * Find the best move for the computer player using the Minimax algorithm.
      * 
      * @param game The current game state
-     * @param depth The current depth of recursion (starts at 0)
-     * @return The index of the box with the best move found
+     * @param deadline Time (System.nanoTime) at which the search gives up
+     * @return The best move found, or -1 if the deadline passed before the search ended
      */
-    private int findBestMoveMinimax(Game game, int depth) {
+    int findBestMoveMinimax(Game game, long deadline) {
+        if (table == null) {
+            table = new TranspositionTable(TABLE_SIZE);
+        }
+        this.deadline = deadline;
+        this.nodes = 0;
+        this.timeUp = false;
+        table.resetCounters();
+        int boxes = game.getRows() * game.getColumns();
+        prepareMinimaxMoves(game, boxes - game.getRound() + 1);
+        minimaxRound = game.getRound();
+
         int bestScore = Integer.MIN_VALUE;
-        int bestMove = 0;
-            // Iterate through all possible moves
-            for (int i = 0; i < game.getRows()*game.getColumns(); i++) {
-                // Check if the spot is available
-                if (game.boxSymbolAt(i) == null) {
-                    // Simulate the move on a cloned game
-                    Game sim = game.clone();
-                    sim.play(i);
-                    // Calculate the score using minimax recursively
-                    int score = minimax(sim, depth + 1, false, Integer.MIN_VALUE, Integer.MAX_VALUE);
-                    if (bestScore < score) {
-                        bestScore = score;
-                        bestMove = i;
-                    }
-                }
+        int bestMove = -1;
+        int alpha = -INFINITY;
+        // Iterate through all possible moves, skipping moves symmetric to one already tried
+        int[] moves = minimaxMoves[0];
+        int count = game.getCanonicalMoves(moves);
+        orderMoves(game, moves, count, table.probe(game.getCanonicalHash()));
+        for (int k = 0; k < count; k++) {
+            int move = moves[k];
+            // Simulate the move on the game itself, then take it back
+            game.play(move);
+            // Calculate the score using minimax recursively
+            int score = -minimax(game, -INFINITY, -alpha);
+            game.undo(move);
+            if (timeUp) return -1;
+
+            if (bestScore < score) {
+                bestScore = score;
+                bestMove = move;
             }
-            return bestMove;
+            alpha = Math.max(alpha, score);
+        }
+        minimaxValue = Integer.signum(bestScore);
+        return bestMove;
     }
 
     /**
-     * Minimax algorithm with alpha-beta pruning to evaluate game states.
+     * Makes sure minimaxMoves has a buffer for each ply, with room for the moves of one position.
+     *
+     * @param game The game to search
+     * @param plies Number of plies searched, the root counting as one
+     */
+    private void prepareMinimaxMoves(Game game, int plies) {
+        if (minimaxMoves == null || minimaxMoves.length < plies || minimaxMoves[0].length != game.getMaxMoves()) {
+            minimaxMoves = new int[plies][game.getMaxMoves()];
+        }
+    }
+
+    /**
+     * Minimax algorithm with alpha-beta pruning to evaluate game states, written in its
+     * negamax form: the score is always for the player to move, and the score of a move
+     * is minus the score of the position it leads to for the opponent.
+     * Results are kept in the transposition table under the canonical hash of the board,
+     * so a position reached by different move orders, or symmetric to a position
+     * already searched, is only searched once.
      * 
+     * A won game scores WIN - round for the winner, so that faster wins score higher.
+     * Since the score only depends on the position, it can be reused from the table.
+     *
      * @param game The current game state
-     * @param depth Current recursion depth
-     * @param isMaximizing True if the current player is maximizing the score
      * @param alpha Alpha value for pruning
      * @param beta Beta value for pruning
-     * @return Score for the game state
+     * @return Score for the game state, for the player to move
      */
-    private int minimax(Game game, int depth, boolean isMaximizing, int alpha, int beta) {
-        // Base cases for terminal states
+    private int minimax(Game game, int alpha, int beta) {
+        // Base cases for terminal states: the player who just played won or drew
         if (game.getGameState() == GameState.DRAW) {
             return 0;
-        } else if (game.getGameState() == GameState.X_WIN) {
-            return depth - 10; // X (player) wins: negative score
-        } else if (game.getGameState() == GameState.O_WIN) {
-            return 10 - depth; // O (AI) wins: positive score
-        }
-
-        if (isMaximizing) {
-            int bestScore = Integer.MIN_VALUE;
-            for (int i = 0; i < game.getRows()*game.getColumns(); i++) {
-                if (game.boxSymbolAt(i) == null) {
-                    Game sim = game.clone();
-                    sim.play(i);
-                    int score = minimax(sim, depth + 1, false, alpha, beta);
-                    bestScore = Math.max(bestScore, score);
-                    
-                    alpha = Math.max(alpha, score);
-                    if (beta <= alpha) break;
-                }
+        } else if (game.getGameState() != GameState.PLAYING) {
+            return game.getRound() - (game.getRows() * game.getColumns() + 1);
+        }
+
+        // Check the clock once in a while
+        if (++nodes % 1024 == 0 && (stop.get() || System.nanoTime() >= deadline)) {
+            timeUp = true;
+        }
+        if (timeUp) return 0;
+
+        // Use what is already known about the position or its symmetric images
+        int symmetry = game.getCanonicalSymmetry();
+        long hash = game.getCanonicalHash();
+        long entry = table.probe(hash);
+        if (entry != TranspositionTable.MISS) {
+            int score = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT) return score;
+            if (bound == TranspositionTable.LOWER) alpha = Math.max(alpha, score);
+            if (bound == TranspositionTable.UPPER) beta = Math.min(beta, score);
+            if (alpha >= beta) return score;
+        }
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = -1;
+        // Each ply has its own moves buffer, so the recursion doesn't overwrite them
+        int[] moves = minimaxMoves[game.getRound() - minimaxRound];
+        int count = game.getAvailableMoves(moves);
+        orderMoves(game, moves, count, entry);
+        for (int k = 0; k < count; k++) {
+            int move = moves[k];
+            game.play(move);
+            int score = -minimax(game, -beta, -alpha);
+            game.undo(move);
+            if (timeUp) return 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
             }
-            return bestScore;
-        } else {
-            int bestScore = Integer.MAX_VALUE;
-            for (int i = 0; i < game.getRows()*game.getColumns(); i++) {
-                if (game.boxSymbolAt(i) == null) {
-                    Game sim = game.clone();
-                    sim.play(i);
-                    int score = minimax(sim, depth + 1, true, alpha, beta);
-                    bestScore = Math.min(bestScore, score);
-
-                    beta = Math.min(beta, score);
-                    if (beta <= alpha) break;
+            alpha = Math.max(alpha, score);
+            if (beta <= alpha) break;
+        }
+
+        int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER
+                : bestScore >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        // The best move is stored as it is on the canonical board
+        table.store(hash, game.getRows() * game.getColumns() - game.getRound(), bestScore, bound, game.symmetricMove(symmetry, bestMove));
+        return bestScore;
+    }
+
+    /**
+     * Puts the best move stored in a table entry first, since it is the most likely to cause a cutoff.
+     * The stored move is on the canonical board, so it is first brought back to the current board.
+     *
+     * @param game The current game state
+     * @param moves The legal moves, reordered in place
+     * @param count The number of legal moves
+     * @param entry The table entry of the position, or TranspositionTable.MISS
+     */
+    private static void orderMoves(Game game, int[] moves, int count, long entry) {
+        if (entry != TranspositionTable.MISS && TranspositionTable.move(entry) >= 0) {
+            int symmetry = game.inverseSymmetry(game.getCanonicalSymmetry());
+            int tableMove = game.symmetricMove(symmetry, TranspositionTable.move(entry));
+            for (int k = 1; k < count; k++) {
+                if (moves[k] == tableMove) {
+                    moves[k] = moves[0];
+                    moves[0] = tableMove;
+                    break;
                 }
             }
-            return bestScore;
         }
     }
 
+    /**
+     * Iterative-deepening alpha-beta: searches one move deeper at a time until the deadline,
+     * scoring the positions at the depth limit by their open lines.
+     *
+     * @param game The current game state
+     * @param deadline Time (System.nanoTime) at which the search stops
+     * @return The index of the best move of the deepest completed search
+     */
+    private int alphaBeta(Game game, long deadline) {
+        if (alphaBetaSearch == null) {
+            alphaBetaSearch = new AlphaBetaSearch(stop);
+        }
+        return alphaBetaSearch.search(game, deadline);
+    }
+
+    /**
+     * Monte Carlo Tree Search: grows a UCT tree from the current position until the deadline.
+     *
+     * @param game The current game state
+     * @param deadline Time (System.nanoTime) at which the search stops
+     * @return The index of the best move found
+     */
+    private int treeSearch(Game game, long deadline) {
+        if (treeSearch == null) {
+            treeSearch = new MonteCarloTreeSearch(MonteCarloTreeSearch.DEFAULT_CAPACITY, stop);
+        }
+        return treeSearch.search(game, deadline, random);
+    }
+
     /**
      * Flat Monte Carlo simulation to pick the best move based on playout results.
-     * Runs simulations for about 1 second and picks the move with highest win ratio.
+     * Runs simulations until the deadline and picks the move with highest win ratio.
+     * When more than one thread is allowed, the simulations are split between the workers.
      * 
      * @param game The current game state
+     * @param deadline Time (System.nanoTime) at which the simulations stop
      * @return The index of the best move found
      */
-    private int MonteCarlo(Game game) {
-        long startTime = System.currentTimeMillis();
-        List<Integer> legalMoves = game.getAvailableMoves();
+    int MonteCarlo(Game game, long deadline) {
+        int[] legalMoves = new int[game.getRows() * game.getColumns()];
+        legalMoves = Arrays.copyOf(legalMoves, game.getCanonicalMoves(legalMoves));
 
-        // Maps to store the number of wins and plays for each move
-        Map<Integer, Integer> wins = new HashMap<>();
-        Map<Integer, Integer> plays = new HashMap<>();
+        // Sum of the playout results and number of playouts for each legal move
+        int[] wins = new int[legalMoves.length];
+        int[] plays = new int[legalMoves.length];
+        int sign = game.nextBoxSymbol() == BoxSymbol.O ? 1 : -1;
 
-        // Initialize counts to zero
-        for (int move : legalMoves) {
-            wins.put(move, 0);
-            plays.put(move, 0);
+        if (searchThreads > 1) {
+            parallelPlayouts(game, legalMoves, wins, plays, sign, deadline);
+        } else {
+            runPlayouts(game, legalMoves, wins, plays, sign, random, deadline, stop);
         }
+        playouts = Arrays.stream(plays).asLongStream().sum();
+        monteCarloValue = 0;
 
-        // Run simulations until 0.1 second passes
-        while (System.currentTimeMillis() - startTime < AIdiff) {
-            // Pick a random legal move
-            int move = legalMoves.get(Main.generator.nextInt(legalMoves.size()));
+        // Select the move with the highest average score for the player to move
+        double bestScore = Double.NEGATIVE_INFINITY;
+        int bestMove = legalMoves[0];
+        for (int k = 0; k < legalMoves.length; k++) {
+            if (plays[k] == 0) continue;
+            double score = sign * (double) wins[k] / plays[k];
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = legalMoves[k];
+                monteCarloValue = score;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Root-parallel Monte Carlo: every worker runs playouts on its own copy of the game
+     * with its own random number generator and statistics, which are added up at the deadline.
+     *
+     * @param game The current game state
+     * @param legalMoves The moves to evaluate
+     * @param wins Sum of the playout results of each move, filled by this method
+     * @param plays Number of playouts of each move, filled by this method
+     * @param sign 1 if O is to move, -1 for X
+     * @param deadline Time (System.nanoTime) at which the workers stop
+     */
+    private void parallelPlayouts(Game game, int[] legalMoves, int[] wins, int[] plays, int sign, long deadline) {
+        ExecutorService pool = getWorkers();
+        SplittableRandom seed = new SplittableRandom(Main.generator.nextLong());
+        List<Future<int[][]>> results = new ArrayList<>(searchThreads);
 
-            // Clone the game and play the move
+        for (int t = 0; t < searchThreads; t++) {
             Game sim = game.clone();
-            sim.play(move);
+            SplittableRandom rng = seed.split();
+            results.add(pool.submit(() -> {
+                int[][] stats = new int[2][legalMoves.length];
+                runPlayouts(sim, legalMoves, stats[0], stats[1], sign, rng, deadline, stop);
+                return stats;
+            }));
+        }
 
-            // Play random playout to the end of the game
-            int result = sim.randomPlayout();
+        // Merge the statistics of every worker
+        for (Future<int[][]> result : results) {
+            try {
+                int[][] stats = result.get();
+                for (int k = 0; k < legalMoves.length; k++) {
+                    wins[k] += stats[0][k];
+                    plays[k] += stats[1][k];
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Runs random playouts from the given game until the deadline passes,
+     * or until the best move leads the others by too much to be overtaken, see TimeManager.isDecided().
+     * Each playout starts with a random legal move and the game is restored after it.
+     *
+     * @param game The game to simulate on, only used by the calling thread
+     * @param legalMoves The moves to evaluate
+     * @param wins Sum of the playout results of each move
+     * @param plays Number of playouts of each move
+     * @param sign 1 if O is to move, -1 for X
+     * @param rng Random number generator owned by the calling thread
+     * @param deadline Time (System.nanoTime) at which the playouts stop
+     * @param stop Flag set by another thread to stop the playouts early
+     */
+    private static void runPlayouts(Game game, int[] legalMoves, int[] wins, int[] plays, int sign, RandomGenerator rng, long deadline, AtomicBoolean stop) {
+        for (long n = 0; ; n++) {
+            // Read the clock every few playouts only
+            if (n % TimeManager.CLOCK_CHECK == 0 && (System.nanoTime() >= deadline || stop.get())) break;
+            if (n % DECIDED_CHECK == 0 && n > 0 && TimeManager.isDecided(wins, plays, sign)) break;
+
+            // Pick a random legal move
+            int k = rng.nextInt(legalMoves.length);
+            int move = legalMoves[k];
+
+            // Play the move, run a random playout to the end of the game and take everything back
+            game.play(move);
+            int result = game.simulate(rng);
+            game.undo(move);
 
             // Update statistics for the move
-            plays.put(move, plays.get(move) + 1);
-            wins.put(move, wins.get(move) + result);
+            plays[k]++;
+            wins[k] += result;
         }
+    }
 
-        // Select the move with the highest average win-to-loss score
-        double bestScore = -1;
-        int bestMove = legalMoves.get(0);
-        for (int move : legalMoves) {
-            double score = (double) wins.get(move) / plays.get(move);
-
-            if (score > bestScore) {
-                bestScore = score;
-                bestMove = move;
-            }
+    /**
+     * Returns the pool of daemon threads running the parallel searches, creating it on first use.
+     * The pool grows to the number of threads the computers ask for and reuses idle threads.
+     */
+    private static synchronized ExecutorService getWorkers() {
+        if (workers == null) {
+            workers = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "Computer-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
-        return bestMove;
+        return workers;
     }
-}
\ No newline at end of file
+}
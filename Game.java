@@ -1,22 +1,227 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
 
 public abstract class Game {
+    // Hashing tables of each kind and size of game, built once and shared by its instances, see initHashing()
+    private static final ConcurrentHashMap<String, Hashing> hashings = new ConcurrentHashMap<>();
+
     protected int rows;
     protected int columns;
     protected int round;
     protected GameState gameState; // Current state of the game (e.g. PLAYING, XWIN, OWIN, DRAW)
     protected int numberWin; // Number of consecutive symbols needed to win
+    protected int[] history; // Moves played so far: history[k] is the move played at round k
+    protected long[] zobrist; // Random key of each (box, symbol): zobrist[2 * i] for X, zobrist[2 * i + 1] for O
+    protected int[][] symmetries; // symmetries[s][i] is the box where the symmetry s sends the box i, s = 0 is the identity
+    protected int[] inverseSymmetries; // inverseSymmetries[s] is the symmetry that undoes the symmetry s
+    protected long[] symmetricHashes; // symmetricHashes[s] is the Zobrist hash of the board transformed by the symmetry s
+    protected LineIndex lines; // Every line of numberWin boxes on the board
+    protected int[] xCount; // Number of X in each line
+    protected int[] oCount; // Number of O in each line
+    private int[] playoutMoves; // Moves buffer of randomPlayout(), created on first use
+    private long[] seenHashes; // Canonical hashes buffer of getCanonicalMoves(), created on first use
 
      // Getters (accessors)
     public int getRows() {return rows;}
 
     public int getColumns() {return columns;}
 
+    public int getNumberWin() {return numberWin;}
 
     public int getRound() {return round;}
 
     public GameState getGameState() {return gameState;}
 
+    /**
+     * Returns the last move played, as it was given to play().
+     * Only valid when at least one move has been played.
+     *
+     * @return the last move played
+     */
+    public int getLastMove() {return history[round - 1];}
+
+    /**
+     * Returns the move played at the given round, as it was given to play().
+     * Moves taken back by undo() are kept until another move is played at their round.
+     *
+     * @param round the round of the move, from 0
+     * @return the move played at this round
+     */
+    public int getMove(int round) {return history[round];}
+
+    /**
+     * Returns the Zobrist hash of the current board: the xor of the keys of every
+     * (box, symbol) on it. Equal boards of the same game always have the same hash.
+     *
+     * @return 64-bit hash of the board
+     */
+    public long getHash() {return symmetricHashes[0];}
+
+    // Number of symmetries of the board, including the identity
+    public int getSymmetryCount() {return symmetries.length;}
+
+    /**
+     * Returns the hash of the canonical form of the board: the smallest hash among all
+     * the symmetric images of the board. Boards that are symmetric to each other
+     * have the same canonical hash, so a search only needs to look at one of them.
+     *
+     * @return 64-bit hash of the canonical form of the board
+     */
+    public long getCanonicalHash() {
+        return symmetricHashes[getCanonicalSymmetry()];
+    }
+
+    /**
+     * Returns the symmetry that transforms the board into its canonical form.
+     *
+     * @return index of the symmetry, 0 for the identity
+     */
+    public int getCanonicalSymmetry() {
+        int canonical = 0;
+        for (int s = 1; s < symmetricHashes.length; s++) {
+            if (symmetricHashes[s] < symmetricHashes[canonical]) canonical = s;
+        }
+        return canonical;
+    }
+
+    /**
+     * Returns the move that corresponds to the given move on the board transformed by a symmetry.
+     * Moves are boxes by default; games whose moves are something else override this.
+     *
+     * @param s index of the symmetry
+     * @param move a move of the current board
+     * @return the same move on the transformed board
+     */
+    public int symmetricMove(int s, int move) {
+        return symmetries[s][move];
+    }
+
+    // Index of the symmetry that undoes the symmetry s
+    public int inverseSymmetry(int s) {return inverseSymmetries[s];}
+
+    /**
+     * Fills the array with the available moves, keeping only one move of each group of moves
+     * leading to symmetric boards. On an empty square board, this leaves 3 moves out of 9.
+     *
+     * @param moves array receiving the moves, with room for getMaxMoves() moves
+     * @return the number of moves written, one per distinct resulting board
+     */
+    public int getCanonicalMoves(int[] moves) {
+        int count = getAvailableMoves(moves);
+        if (symmetries.length == 1) return count;
+
+        if (seenHashes == null) {
+            seenHashes = new long[rows * columns];
+        }
+        long[] seen = seenHashes;
+        int canonicalCount = 0;
+        for (int k = 0; k < count; k++) {
+            int move = moves[k];
+            play(move);
+            long canonicalHash = getCanonicalHash();
+            undo(move);
+
+            boolean duplicate = false;
+            for (int j = 0; j < canonicalCount; j++) {
+                if (seen[j] == canonicalHash) duplicate = true;
+            }
+            if (!duplicate) {
+                seen[canonicalCount] = canonicalHash;
+                moves[canonicalCount++] = move;
+            }
+        }
+        return canonicalCount;
+    }
+
+    /**
+     * Sets up the Zobrist keys and the symmetries of this game. The keys only
+     * depend on the type of game and its size, so hashes can be compared between
+     * instances and program runs. The tables are built by the first game of each
+     * type and size and shared by the next ones.
+     * Must be called by the constructors once rows, columns and numberWin are set.
+     *
+     * @param symmetries builds the permutation of the boxes of each symmetry of the board, starting with the identity
+     */
+    protected void initHashing(Supplier<int[][]> symmetries) {
+        String configuration = getClass().getName() + rows + "x" + columns + "/" + numberWin;
+        int boxes = rows * columns;
+        Hashing hashing = hashings.computeIfAbsent(configuration, key -> new Hashing(key, boxes, symmetries.get()));
+        this.zobrist = hashing.zobrist;
+        this.symmetries = hashing.symmetries;
+        this.inverseSymmetries = hashing.inverseSymmetries;
+        this.symmetricHashes = new long[hashing.symmetries.length];
+    }
+
+    /**
+     * Makes this game a copy of another game of the same type and size, for clone():
+     * the tables that only depend on the type and size are shared, the state of the board is copied.
+     *
+     * @param other the game copied
+     */
+    protected void copyState(Game other) {
+        rows = other.rows;
+        columns = other.columns;
+        numberWin = other.numberWin;
+        round = other.round;
+        gameState = other.gameState;
+        history = other.history.clone();
+        zobrist = other.zobrist;
+        symmetries = other.symmetries;
+        inverseSymmetries = other.inverseSymmetries;
+        symmetricHashes = other.symmetricHashes.clone();
+        lines = other.lines;
+        xCount = other.xCount.clone();
+        oCount = other.oCount.clone();
+    }
+
+    /**
+     * Zobrist keys and symmetries of one type and size of game, never changed once built.
+     */
+    private static final class Hashing {
+        private final long[] zobrist;
+        private final int[][] symmetries;
+        private final int[] inverseSymmetries;
+
+        private Hashing(String configuration, int boxes, int[][] symmetries) {
+            SplittableRandom keys = new SplittableRandom(configuration.hashCode());
+            zobrist = new long[2 * boxes];
+            for (int k = 0; k < zobrist.length; k++) {
+                zobrist[k] = keys.nextLong();
+            }
+
+            this.symmetries = symmetries;
+            this.inverseSymmetries = new int[symmetries.length];
+            for (int s = 0; s < symmetries.length; s++) {
+                // The inverse of s sends every box back to where it came from
+                for (int t = 0; t < symmetries.length; t++) {
+                    boolean inverse = true;
+                    for (int i = 0; i < boxes && inverse; i++) {
+                        inverse = symmetries[t][symmetries[s][i]] == i;
+                    }
+                    if (inverse) inverseSymmetries[s] = t;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds or removes a symbol in a box from the hash of the board and of all its symmetric images.
+     * Called by play() and undo().
+     *
+     * @param i linear index of the box
+     * @param symbol symbol put in or taken out of the box
+     */
+    protected void toggleHash(int i, BoxSymbol symbol) {
+        int offset = symbol == BoxSymbol.X ? 0 : 1;
+        for (int s = 0; s < symmetries.length; s++) {
+            symmetricHashes[s] ^= zobrist[2 * symmetries[s][i] + offset];
+        }
+    }
+
     /**
      * Determines the next player symbol based on the current round.
      * Even rounds -> X plays, Odd rounds -> O plays.
@@ -38,6 +243,9 @@ public abstract class Game {
     public void reset() {
         round = 0;
         gameState = GameState.PLAYING;
+        Arrays.fill(symmetricHashes, 0);
+        Arrays.fill(xCount, 0);
+        Arrays.fill(oCount, 0);
     }
 
     /**
@@ -74,122 +282,103 @@ public abstract class Game {
     /**
      * Helper method to update the game state after a move is played at index i.
      * This method assumes the game was not already finished before this move.
-     * It checks if the move ended the game by forming a line of numberWin symbols
-     * horizontally, vertically, or diagonally.
+     * It adds the move to the counts of the lines through the box: the move wins if
+     * one of them now holds numberWin symbols of the player.
      * If no win is found and the board is full, sets the game state to DRAW.
      *
      * @param i the linear index of the box that was just played
      */
     protected void update(int i) {
-        int row = i / columns;
-        int col = i % columns;
         BoxSymbol currentSymbol = this.nextBoxSymbol(); // Symbol of the player who just played
-        int numAllignedBox = 1; // Count of aligned symbols, starting at 1 for the current box
         round++; // Increment round counter after the move and after extracting current Symbol
 
-        // Check the row
-        // Check the right side
-        for (int j = 1; j < columns - col; j++) {
-            if (boxSymbolAt(i+j) != currentSymbol) {
-                break;
-            }
-            numAllignedBox++;
-        }
-
-        // Check the left side
-        for (int j = 1; j < col + 1; j++) {
-            if (boxSymbolAt(i-j) != currentSymbol) {
-                break;
-            }
-            numAllignedBox++;
-        }
-
         // Check win statement
-        if (numAllignedBox >= numberWin) {
+        if (addToLines(i, currentSymbol)) {
             gameState = currentSymbol == BoxSymbol.X ? GameState.X_WIN : GameState.O_WIN;
             return;
         }
-        
-        numAllignedBox = 1; // Reset count
-        // Check the column
-        // Check down
-        for (int j = 1; j < rows - row; j++) {
-            if (boxSymbolAt(i+j*columns) != currentSymbol) {
-                break;
-            }
-            numAllignedBox++;
-        }
 
-        // Check up
-        for (int j = 1; j < row + 1; j++) {
-            if (boxSymbolAt(i-j*columns) != currentSymbol) {
-                break;
-            }
-            numAllignedBox++;
+        // Check for draw
+        if (round >= columns * rows) {
+            gameState = GameState.DRAW;
         }
+    }
 
-        // Check win statement
-        if (numAllignedBox >= numberWin) {
-            gameState = currentSymbol == BoxSymbol.X ? GameState.X_WIN : GameState.O_WIN;
-            return;
-        }        
-
-        numAllignedBox = 1; // Reset count
-        // Check main diagonal
-        // Check up-left
-        for (int j = 1; j < Math.min(row + 1, col + 1); j++) {
-            if (boxSymbolAt(i-j*(columns+1)) != currentSymbol) {
-                break;
-            }
-            numAllignedBox++;
-        }
+    /**
+     * Sets up the lines of the board and their empty symbol counts.
+     * Must be called by the constructors once rows, columns and numberWin are set.
+     */
+    protected void initLines() {
+        lines = LineIndex.of(rows, columns, numberWin);
+        xCount = new int[lines.getLineCount()];
+        oCount = new int[lines.getLineCount()];
+    }
 
-        // Check down-right
-        for (int j = 1; j < Math.min(rows - row, columns - col); j++) {
-            if (boxSymbolAt(i+j*(columns+1)) != currentSymbol) {
-                break;
-            }
-            numAllignedBox++;
+    /**
+     * Counts a symbol put in box i in every line through the box.
+     *
+     * @param i linear index of the box
+     * @param symbol the symbol put in the box
+     * @return true if one of these lines is now full of this symbol
+     */
+    protected boolean addToLines(int i, BoxSymbol symbol) {
+        int[] count = symbol == BoxSymbol.X ? xCount : oCount;
+        boolean win = false;
+        for (int k = lines.firstLineOf(i); k < lines.endLineOf(i); k++) {
+            if (++count[lines.getCellLine(k)] >= numberWin) win = true;
         }
+        return win;
+    }
 
-        // Check win statement
-        if (numAllignedBox >= numberWin) {
-            gameState = currentSymbol == BoxSymbol.X ? GameState.X_WIN : GameState.O_WIN;
-            return;
-        } 
-
-        numAllignedBox = 1; // Reset count
-        // Check anti-diagonal
-        // Check up-right
-        for (int j = 1; j < Math.min(row + 1, columns - col); j++) {
-            if (boxSymbolAt(i-j*(columns-1)) != currentSymbol) {
-                break;
-            }
-            numAllignedBox++;
+    /**
+     * Removes a symbol taken out of box i from the lines through the box.
+     *
+     * @param i linear index of the box
+     * @param symbol the symbol taken out of the box
+     */
+    protected void removeFromLines(int i, BoxSymbol symbol) {
+        int[] count = symbol == BoxSymbol.X ? xCount : oCount;
+        for (int k = lines.firstLineOf(i); k < lines.endLineOf(i); k++) {
+            count[lines.getCellLine(k)]--;
         }
+    }
 
-        // Check down-left
-        for (int j = 1; j < Math.min(rows - row, col + 1); j++) {
-            if (boxSymbolAt(i+j*(columns-1)) != currentSymbol) {
-                break;
-            }
-            numAllignedBox++;
-        }
+    // Lines of the board, whose symbols are counted by getXCount() and getOCount()
+    public LineIndex getLines() {return lines;}
 
-        // Check win statement
-        if (numAllignedBox >= numberWin) {
-            gameState = currentSymbol == BoxSymbol.X ? GameState.X_WIN : GameState.O_WIN;
-            return;
-        } 
+    // Number of X in a line
+    public int getXCount(int line) {return xCount[line];}
 
-        // Check for draw
-        if (round >= columns * rows) {
-            gameState = GameState.DRAW;
+    // Number of O in a line
+    public int getOCount(int line) {return oCount[line];}
+
+    /**
+     * Returns a list of the available moves for the current game state.
+     * Search code should use getAvailableMoves(int[]), which creates no objects.
+     *
+     * @return an ArrayList of the available moves
+     */
+    public ArrayList<Integer> getAvailableMoves() {
+        int[] moves = new int[rows * columns];
+        int count = getAvailableMoves(moves);
+        ArrayList<Integer> availableMoves = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            availableMoves.add(moves[k]);
         }
+        return availableMoves;
     }
 
-    // Abstract method to get the list of available moves for the current game state
-    public abstract ArrayList<Integer> getAvailableMoves();
+    /**
+     * Abstract method writing the available moves for the current game state into
+     * an array owned by the caller, so that the search doesn't create any object.
+     *
+     * @param moves array receiving the moves, with room for getMaxMoves() moves
+     * @return the number of moves written
+     */
+    public abstract int getAvailableMoves(int[] moves);
+
+    // Most moves a position can have, the size of the moves buffers of the searches: one per box by default
+    public int getMaxMoves() {return rows * columns;}
 
     /**
      * Simulates a random playout from the current state until the game ends.
@@ -198,17 +387,64 @@ public abstract class Game {
      * @return 1 if O wins, -1 if X wins, 0 for draw
      */
     public int randomPlayout() {
+        return randomPlayout(Main.generator);
+    }
+
+    /**
+     * Simulates a random playout using the given random number generator.
+     * Search threads pass their own generator so they never share one.
+     *
+     * @param rng the random number generator used to pick the moves
+     * @return 1 if O wins, -1 if X wins, 0 for draw
+     */
+    public int randomPlayout(RandomGenerator rng) {
+        if (playoutMoves == null) {
+            playoutMoves = new int[rows * columns];
+        }
         while (gameState == GameState.PLAYING) {
-            ArrayList<Integer> availableMoves = getAvailableMoves();
-            int move = availableMoves.get(Main.generator.nextInt(availableMoves.size()));
-            play(move);
+            int count = getAvailableMoves(playoutMoves);
+            play(playoutMoves[rng.nextInt(count)]);
         }
+        return result();
+    }
+
+    /**
+     * Converts a finished game state into a playout result.
+     *
+     * @return 1 if O won, -1 if X won, 0 for a draw or a game still being played
+     */
+    protected int result() {
         if (gameState == GameState.O_WIN) return 1;
         if (gameState == GameState.X_WIN) return -1;
         return 0;
     }
 
 
+    /**
+     * Plays a random game from the current state like randomPlayout(),
+     * then undoes every move so the game is left exactly as it was.
+     * This lets the search run playouts on a single board without cloning it.
+     * Games override this with a faster playout that leaves the board untouched.
+     *
+     * @param rng the random number generator used to pick the moves
+     * @return 1 if O wins, -1 if X wins, 0 for draw
+     */
+    public int simulate(RandomGenerator rng) {
+        int startRound = round;
+        int result = randomPlayout(rng);
+        while (round > startRound) {
+            undo();
+        }
+        return result;
+    }
+
+    /**
+     * Undoes the last move played, restoring the board, the round and the game state.
+     */
+    public void undo() {
+        undo(history[round - 1]);
+    }
+
     /**
      * Abstract method to get the symbol at a specific position.
      * 
@@ -220,6 +456,14 @@ public abstract class Game {
     // Abstract method to play a move at index i
     public abstract void play(int i);
 
+    /**
+     * Abstract method to take back the move i, which must be the last move played.
+     * The game goes back to PLAYING since no move can be played after the game ended.
+     *
+     * @param i the move to undo, as it was given to play()
+     */
+    public abstract void undo(int i);
+
     // Abstract method to clone the current game state (deep copy)
     public abstract Game clone();
 }
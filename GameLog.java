@@ -0,0 +1,451 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Log of the games played, kept for replays and training.
+ *
+ * Each game is a compact binary record:
+ * - its length in bytes (varint), then the game type (0 = TTT, 1 = C4), rows, columns and numberWin (1 byte each)
+ * - the number of moves and the moves, as varints: 1 byte for the first 128 boxes, 2 up to 16384
+ * - the result, the ordinal of its GameState (1 byte)
+ * A 7x7 game of 30 moves takes 37 bytes.
+ *
+ * The records are appended through a buffer to segment files of a directory, games-00000.log, games-00001.log...
+ * A new segment is started when the current one is full, and a process writes only to the segments it locked.
+ * The segments are read back through memory-mapped buffers by a Cursor, which only decodes what is asked for,
+ * so scanning millions of games creates no objects.
+ */
+public class GameLog implements Closeable {
+    private static final String PREFIX = "games-";
+    private static final String SUFFIX = ".log";
+    private static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+    private static final int BUFFER_SIZE = 64 << 10;
+    private static final long FLUSH_NANOS = 1_000_000_000L; // Buffered records are written within about a second
+    private static final int MAX_SIZE = 255; // Rows and columns are recorded in 1 byte
+    private static final GameState[] RESULTS = GameState.values();
+
+    private final Path directory;
+    private final long segmentSize; // Bytes after which a new segment is started
+
+    // Writers may be several threads, such as the sessions of the game server
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private FileChannel channel; // Current segment
+    private FileLock fileLock; // Keeps other processes away from the current segment
+    private int segment; // Number of the current segment
+    private long segmentBytes; // Bytes of the current segment, with the buffered ones
+    private long lastFlush = System.nanoTime();
+
+    // Thread writing the buffered records of every log once they are a second old, even when no game ends
+    private static ScheduledExecutorService flusher;
+    private final ScheduledFuture<?> flushTask;
+
+    /**
+     * Prints statistics of the games of a log, scanning it as fast as it can.
+     *
+     * @param args expected as: [directory], by default games
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args.length > 0 ? args[0] : "games");
+        long startTime = System.nanoTime();
+        // Games, moves and results of each kind of game, by type, rows, columns and numberWin
+        Map<Integer, long[]> counts = new TreeMap<>();
+        long games = 0;
+        Cursor cursor = read(directory);
+        while (cursor.next()) {
+            int key = cursor.getType() << 24 | cursor.getRows() << 16 | cursor.getColumns() << 8 | cursor.getNumberWin();
+            long[] count = counts.computeIfAbsent(key, k -> new long[2 + RESULTS.length]);
+            count[0]++;
+            count[1] += cursor.getMoveCount();
+            count[2 + cursor.getResult().ordinal()]++;
+            games++;
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        System.out.printf("%d games read from %s in %.2f s (%.0f games per second)%n", games, directory, seconds, games / seconds);
+        for (Map.Entry<Integer, long[]> entry : counts.entrySet()) {
+            int key = entry.getKey();
+            long[] count = entry.getValue();
+            String name = (key >>> 24 == 1 ? "C4 " : "TTT ") + (key >> 16 & 0xFF) + "x" + (key >> 8 & 0xFF) + "/" + (key & 0xFF);
+            System.out.printf("%-12s %8d games, %5.1f moves on average, X wins %d, O wins %d, draws %d, unfinished %d%n",
+                    name, count[0], (double) count[1] / count[0], count[2 + GameState.X_WIN.ordinal()],
+                    count[2 + GameState.O_WIN.ordinal()], count[2 + GameState.DRAW.ordinal()], count[2 + GameState.PLAYING.ordinal()]);
+        }
+    }
+
+    /**
+     * Opens a log to append games to, with segments of 64 MB.
+     *
+     * @param directory the directory of the segments, created if needed
+     */
+    public static GameLog open(Path directory) throws IOException {
+        return new GameLog(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a log to append games to. Writing continues in the last segment, after its last
+     * complete record, unless another process is writing to it.
+     *
+     * @param directory the directory of the segments, created if needed
+     * @param segmentSize bytes after which a new segment is started, at most 2 GB so that a segment can be mapped
+     */
+    public GameLog(Path directory, long segmentSize) throws IOException {
+        if (segmentSize < BUFFER_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The segment size must be between " + BUFFER_SIZE + " and " + Integer.MAX_VALUE + " bytes.");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        List<Path> segments = segments(directory);
+        openSegment(segments.isEmpty() ? 0 : number(segments.get(segments.size() - 1)));
+        flushTask = getFlusher().scheduleWithFixedDelay(this::flushOldRecords, FLUSH_NANOS, FLUSH_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the daemon thread flushing the logs, creating it on first use.
+     */
+    private static synchronized ScheduledExecutorService getFlusher() {
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "GameLog-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return flusher;
+    }
+
+    /**
+     * Writes the buffered records if the last write is a second old, so that an idle writer loses nothing in a crash.
+     */
+    private void flushOldRecords() {
+        lock.lock();
+        try {
+            if (channel.isOpen() && buffer.position() > 0 && System.nanoTime() - lastFlush >= FLUSH_NANOS) {
+                flush();
+            }
+        } catch (IOException e) {
+            System.out.println("Games could not be recorded: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tells if a game can be recorded: its rows and columns must fit in a byte.
+     */
+    public static boolean canRecord(Game game) {
+        return game.getRows() <= MAX_SIZE && game.getColumns() <= MAX_SIZE;
+    }
+
+    /**
+     * Appends a game. The record is buffered: it is written when the buffer is full,
+     * about a second later at most, or by flush() and close().
+     *
+     * @param game the game to record, usually finished
+     */
+    public void append(Game game) throws IOException {
+        if (!canRecord(game)) {
+            throw new IllegalArgumentException("Boards of more than " + MAX_SIZE + " rows or columns can't be recorded.");
+        }
+        int moveCount = game.getRound();
+        int bodySize = 4 + varintSize(moveCount) + 1;
+        for (int k = 0; k < moveCount; k++) {
+            bodySize += varintSize(game.getMove(k));
+        }
+        int size = varintSize(bodySize) + bodySize;
+
+        lock.lock();
+        try {
+            if (segmentBytes > 0 && segmentBytes + size > segmentSize) {
+                flush();
+                closeSegment();
+                openSegment(segment + 1);
+            }
+            if (size > buffer.remaining()) {
+                flush();
+            }
+            // Only the games of huge boards don't fit in the buffer
+            ByteBuffer out = size <= buffer.remaining() ? buffer : ByteBuffer.allocate(size);
+            putVarint(out, bodySize);
+            out.put((byte) (game instanceof C4 ? 1 : 0));
+            out.put((byte) game.getRows());
+            out.put((byte) game.getColumns());
+            out.put((byte) game.getNumberWin());
+            putVarint(out, moveCount);
+            for (int k = 0; k < moveCount; k++) {
+                putVarint(out, game.getMove(k));
+            }
+            out.put((byte) game.getGameState().ordinal());
+            segmentBytes += size;
+            if (out != buffer) {
+                write(out);
+            } else if (System.nanoTime() - lastFlush > FLUSH_NANOS) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the buffered records to the current segment.
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            write(buffer);
+            lastFlush = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the buffered records and closes the current segment.
+     */
+    @Override
+    public void close() throws IOException {
+        flushTask.cancel(false);
+        lock.lock();
+        try {
+            flush();
+            closeSegment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(ByteBuffer records) throws IOException {
+        records.flip();
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+        records.clear();
+    }
+
+    /**
+     * Opens the first segment from the given number that no other process is writing to,
+     * dropping an incomplete last record left by a crash.
+     */
+    private void openSegment(int number) throws IOException {
+        while (true) {
+            FileChannel newChannel = FileChannel.open(segmentPath(directory, number),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileLock newLock;
+            try {
+                newLock = newChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                newLock = null; // Locked by another log of this process
+            }
+            if (newLock != null && newChannel.size() < segmentSize) {
+                channel = newChannel;
+                fileLock = newLock;
+                segment = number;
+                segmentBytes = completeBytes(channel);
+                channel.truncate(segmentBytes);
+                channel.position(segmentBytes);
+                return;
+            }
+            if (newLock != null) newLock.release();
+            newChannel.close();
+            number++;
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        fileLock.release();
+        channel.close();
+    }
+
+    /**
+     * Returns the number of bytes of the complete records at the start of a segment.
+     */
+    private static long completeBytes(FileChannel channel) throws IOException {
+        if (channel.size() == 0) return 0;
+        Cursor cursor = new Cursor(List.of());
+        cursor.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        while (cursor.nextRecord()) {
+            // Skips the complete records
+        }
+        return cursor.buffer.position();
+    }
+
+    /**
+     * Returns a cursor over every game of a log, segment by segment in the order they were written.
+     *
+     * @param directory the directory of the segments
+     */
+    public static Cursor read(Path directory) throws IOException {
+        return new Cursor(Files.isDirectory(directory) ? segments(directory) : List.of());
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(path -> path.getFileName().toString().matches(PREFIX + "\\d+" + SUFFIX)).sorted().forEach(segments::add);
+            return segments;
+        }
+    }
+
+    private static Path segmentPath(Path directory, int number) {
+        return directory.resolve(String.format("%s%05d%s", PREFIX, number, SUFFIX));
+    }
+
+    private static int number(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) size++;
+        return size;
+    }
+
+    // Varints: 7 bits per byte from the lowest, the high bit set on every byte but the last
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Streaming reader of the records of a log. next() moves to the next game, whose fields are then
+     * read from the mapped segment by the getters: nothing is decoded that is not asked for.
+     * A truncated record, from a crash while writing, ends its segment.
+     */
+    public static class Cursor {
+        private final List<Path> segments;
+        private int nextSegment; // Index of the next segment to map
+        private MappedByteBuffer buffer; // Current segment, positioned after the current record
+
+        // Current record: its body is [start, end)
+        private int start;
+        private int end;
+        private int movesStart; // Offset of the first move
+        private int moveCount;
+        private int at; // Offset of the next byte to decode
+
+        private Cursor(List<Path> segments) {
+            this.segments = segments;
+        }
+
+        /**
+         * Moves to the next game.
+         *
+         * @return false when there are no more games
+         */
+        public boolean next() throws IOException {
+            while (buffer == null || !nextRecord()) {
+                if (nextSegment == segments.size()) return false;
+                try (FileChannel channel = FileChannel.open(segments.get(nextSegment++), StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Reads the record at the position of the buffer, if it is complete.
+         */
+        private boolean nextRecord() {
+            int limit = buffer.limit();
+            at = buffer.position();
+            int bodySize = readVarint(limit);
+            if (bodySize < 6 || at + bodySize > limit) return false; // 6 bytes without moves
+            start = at;
+            end = at + bodySize;
+            at = start + 4;
+            moveCount = readVarint(end);
+            if (moveCount < 0) return false;
+            movesStart = at;
+            buffer.position(end);
+            return true;
+        }
+
+        /**
+         * Decodes the varint at the offset at, before limit.
+         *
+         * @return its value, or -1 if it is cut by limit
+         */
+        private int readVarint(int limit) {
+            int value = 0;
+            for (int shift = 0; at < limit && shift < 32; shift += 7) {
+                byte b = buffer.get(at++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            return -1;
+        }
+
+        // Fields of the current game
+        public int getType() {return buffer.get(start);}
+
+        public int getRows() {return buffer.get(start + 1) & 0xFF;}
+
+        public int getColumns() {return buffer.get(start + 2) & 0xFF;}
+
+        public int getNumberWin() {return buffer.get(start + 3) & 0xFF;}
+
+        public int getMoveCount() {return moveCount;}
+
+        public GameState getResult() {return RESULTS[buffer.get(end - 1)];}
+
+        /**
+         * Decodes the moves of the current game.
+         *
+         * @param moves filled with the moves in the order they were played, at least getMoveCount() long
+         * @return the number of moves
+         */
+        public int getMoves(int[] moves) {
+            at = movesStart;
+            for (int k = 0; k < moveCount; k++) {
+                moves[k] = readVarint(end);
+            }
+            return moveCount;
+        }
+
+        /**
+         * Replays the current game.
+         *
+         * @return a new game, in its final state
+         * @throws IllegalStateException if the record is not a valid game
+         */
+        public Game toGame() {
+            Game game = getType() == 1 ? new C4(getRows(), getColumns(), getNumberWin()) : new TTT(getRows(), getColumns(), getNumberWin());
+            if (game.getRows() != getRows() || game.getColumns() != getColumns()) {
+                throw new IllegalStateException("Unsupported board: " + getRows() + "x" + getColumns());
+            }
+            int[] moves = new int[moveCount];
+            getMoves(moves);
+            for (int move : moves) {
+                if (move < 0 || game.getGameState() != GameState.PLAYING) {
+                    throw new IllegalStateException("Invalid record at offset " + start);
+                }
+                game.play(move);
+            }
+            return game;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TCP server hosting many games at once, each client playing against the computer with a line protocol.
+ *
+ * Every connection is a session with its own game and scores, served by its own thread: a virtual
+ * thread on Java 21 and later, a platform thread otherwise. The computer searches run on a bounded
+ * pool of platform threads, so many sessions thinking at once can't slow down the others' I/O.
+ * Each search thread keeps the computers of the few settings used last, reused by every session: a computer
+ * forgets the time saved and the pondering of its previous session when it plays for another one.
+ * The finished games are appended to the log of the games directory, see GameLog.
+ *
+ * Commands, one per line:
+ * NEW game [X|O] [STRATEGY:ms[:easy]]  Starts a game, game being ROWSxCOLUMNS/WIN or C4[:ROWSxCOLUMNS/WIN], playing X by default
+ * PLAY n                               Plays box n (column n for Connect 4), from 1
+ * BOARD                                Shows the board
+ * QUIT                                 Ends the session
+ * Replies: OK or ERROR followed by a message, MOVE n when the computer plays, RESULT state wins draws losses
+ * at the end of a game, and the board lines followed by END for BOARD.
+ */
+public class GameServer {
+    // Default computer of a new game
+    private static final String DEFAULT_COMPUTER = "ALPHA_BETA:100";
+
+    // Longest thinking time in ms a client may ask for
+    private static final int MAX_THINKING_TIME = 5000;
+
+    // Most boxes of a game on this server, so that a client can't make the searches allocate too much
+    private static final int MAX_BOXES = 400;
+
+    // Computers kept by each search thread, the least recently used one is dropped beyond that
+    private static final int CACHED_COMPUTERS = 4;
+
+    private final int port;
+
+    // Threads of the sessions and of the computer searches
+    private final ExecutorService sessions = newSessionExecutor();
+    private final ExecutorService searches;
+
+    // Computers of each search thread, by normalized setting, see normalize()
+    private final ThreadLocal<Map<String, CachedComputer>> computers = ThreadLocal.withInitial(() -> new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedComputer> eldest) {
+            return size() > CACHED_COMPUTERS;
+        }
+    });
+
+    private final AtomicInteger openSessions = new AtomicInteger();
+
+    // Log of the finished games, shared by the sessions
+    private GameLog gameLog;
+
+    /**
+     * Entry point of the server.
+     *
+     * @param args expected as: [port] [searchThreads], by default 4444 and the number of cores
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 4444;
+        int searchThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        new GameServer(port, searchThreads).run();
+    }
+
+    /**
+     * Creates a server.
+     *
+     * @param port TCP port to listen on, on the local address
+     * @param searchThreads number of threads running the computer searches
+     */
+    public GameServer(int port, int searchThreads) {
+        if (searchThreads < 1) {
+            throw new IllegalArgumentException("The server needs at least 1 search thread.");
+        }
+        this.port = port;
+        this.searches = Executors.newFixedThreadPool(searchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "GameServer-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Accepts connections until the process is stopped, each one served by its own session thread.
+     */
+    public void run() throws IOException {
+        gameLog = GameLog.open(Path.of("games"));
+        // Writes the buffered games when the server is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                gameLog.close();
+            } catch (IOException e) {
+                System.out.println("The last games could not be recorded: " + e.getMessage());
+            }
+        }));
+        try (ServerSocket server = new ServerSocket(port, 1000, InetAddress.getLoopbackAddress())) {
+            System.out.println("Game server listening on " + server.getLocalSocketAddress());
+            while (true) {
+                Socket socket = server.accept();
+                sessions.execute(new Session(socket));
+            }
+        }
+    }
+
+    /**
+     * Returns an executor running each task on a new virtual thread when the JVM has them (Java 21),
+     * found by reflection so that the game still builds on Java 17, or on a pool of platform threads.
+     */
+    private static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "GameServer-session");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Checks the settings of a computer and writes them the same way whatever the client typed,
+     * so that equal settings share their computers.
+     *
+     * @param spec settings of the computer, STRATEGY:ms[:easy]
+     * @return the settings as STRATEGY:ms or STRATEGY:ms:easy
+     * @throws IllegalArgumentException if the settings are invalid or the thinking time is above MAX_THINKING_TIME
+     */
+    static String normalize(String spec) {
+        Computer computer = Tournament.parse(spec);
+        if (computer.getThinkingTime() > MAX_THINKING_TIME) {
+            throw new IllegalArgumentException("The thinking time can't be above " + MAX_THINKING_TIME + " ms on this server.");
+        }
+        return computer.getSearchStrategy() + ":" + computer.getThinkingTime() + (computer.isPerfectPlay() ? "" : ":easy");
+    }
+
+    /**
+     * Runs a search on the search pool and waits for its move.
+     *
+     * @param spec normalized settings of the computer, see normalize()
+     * @param game the game to search, not used by the session until the search ends
+     * @param session the session asking for the move
+     * @return the move chosen by the computer
+     */
+    private int searchMove(String spec, Game game, Session session) throws InterruptedException {
+        try {
+            return searches.submit(() -> {
+                CachedComputer cached = computers.get().computeIfAbsent(spec, key -> new CachedComputer(Tournament.parse(key)));
+                if (cached.session != session) {
+                    // The time saved and the pondering of the previous session don't belong to this game
+                    cached.computer.forgetGame();
+                    cached.session = session;
+                }
+                return cached.computer.chooseMove(game);
+            }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The computer failed to play", e.getCause());
+        }
+    }
+
+    /**
+     * A computer of a search thread and the session it played for last.
+     */
+    private static class CachedComputer {
+        private final Computer computer;
+        private Session session;
+
+        private CachedComputer(Computer computer) {
+            this.computer = computer;
+        }
+    }
+
+    /**
+     * One client connection and its games.
+     */
+    private class Session implements Runnable {
+        private final Socket socket;
+        private PrintWriter out;
+
+        // Current game, null before the first NEW
+        private Game game;
+        private String computer; // Settings of the computer, STRATEGY:ms[:easy]
+        private BoxSymbol symbol; // Symbol of the client
+
+        // Results of the client in this session
+        private int wins;
+        private int draws;
+        private int losses;
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            openSessions.incrementAndGet();
+            try (socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+                out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+                out.println("OK Welcome, " + openSessions.get() + " sessions open. Commands: NEW game [X|O] [STRATEGY:ms[:easy]], PLAY n, BOARD, QUIT");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] words = line.trim().split("\\s+");
+                    if (words[0].equalsIgnoreCase("QUIT")) {
+                        out.println("OK Bye");
+                        break;
+                    }
+                    try {
+                        handle(words);
+                    } catch (IllegalArgumentException e) {
+                        out.println("ERROR " + e.getMessage());
+                    } catch (RuntimeException e) {
+                        // A failure of the computer only ends the command, never the session
+                        out.println("ERROR " + e);
+                    }
+                }
+            } catch (IOException e) {
+                // The client went away, nothing to answer
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                openSessions.decrementAndGet();
+            }
+        }
+
+        /**
+         * Runs one command.
+         *
+         * @throws IllegalArgumentException if the command is invalid
+         */
+        private void handle(String[] words) throws InterruptedException {
+            switch (words[0].toUpperCase()) {
+                case "NEW":
+                    newGame(words);
+                    break;
+                case "PLAY":
+                    if (words.length != 2) {
+                        throw new IllegalArgumentException("Use PLAY n.");
+                    }
+                    play(Integer.parseInt(words[1]) - 1);
+                    break;
+                case "BOARD":
+                    if (game == null) {
+                        throw new IllegalArgumentException("No game, start one with NEW.");
+                    }
+                    out.println(game);
+                    out.println("END");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + words[0]);
+            }
+        }
+
+        private void newGame(String[] words) throws InterruptedException {
+            if (words.length < 2 || words.length > 4) {
+                throw new IllegalArgumentException("Use NEW game [X|O] [STRATEGY:ms[:easy]].");
+            }
+            Game newGame = Tournament.newGame(words[1]);
+            if (newGame.getRows() * newGame.getColumns() > MAX_BOXES) {
+                throw new IllegalArgumentException("The board can't have more than " + MAX_BOXES + " boxes on this server.");
+            }
+            BoxSymbol newSymbol = words.length > 2 ? BoxSymbol.valueOf(words[2].toUpperCase()) : BoxSymbol.X;
+            String newComputer = normalize(words.length > 3 ? words[3] : DEFAULT_COMPUTER); // Fails early on invalid settings
+
+            game = newGame;
+            symbol = newSymbol;
+            computer = newComputer;
+            out.println("OK New game " + words[1] + ", you play " + symbol + " against " + computer);
+            if (symbol == BoxSymbol.O) {
+                computerPlays();
+            }
+        }
+
+        private void play(int move) throws InterruptedException {
+            if (game == null || game.getGameState() != GameState.PLAYING) {
+                throw new IllegalArgumentException("No game in progress, start one with NEW.");
+            }
+            if (!isLegal(game, move)) {
+                throw new IllegalArgumentException((move + 1) + " is not a legal move.");
+            }
+            game.play(move);
+            if (!gameOver()) {
+                computerPlays();
+            }
+        }
+
+        private void computerPlays() throws InterruptedException {
+            int move = searchMove(computer, game, this);
+            game.play(move);
+            out.println("MOVE " + (move + 1));
+            gameOver();
+        }
+
+        /**
+         * Reports the result if the game is over.
+         *
+         * @return true if the game is over
+         */
+        private boolean gameOver() {
+            GameState state = game.getGameState();
+            if (state == GameState.PLAYING) return false;
+            if (state == GameState.DRAW) draws++;
+            else if ((state == GameState.X_WIN) == (symbol == BoxSymbol.X)) wins++;
+            else losses++;
+            out.println("RESULT " + state + " " + wins + " " + draws + " " + losses);
+            try {
+                gameLog.append(game);
+            } catch (IOException e) {
+                System.out.println("Game not recorded: " + e.getMessage());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Checks that a move can be played: a free box for Tic Tac Toe, a column that is not full for Connect 4.
+     */
+    private static boolean isLegal(Game game, int move) {
+        if (game instanceof C4) {
+            return move >= 0 && move < game.getColumns() && !((C4) game).columnIsFull(move);
+        }
+        return move >= 0 && move < game.getRows() * game.getColumns() && game.boxSymbolAt(move) == null;
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed list of every line of a board: every group of numberWin aligned boxes,
+ * horizontally, vertically or diagonally, and for each box the lines going through it.
+ *
+ * A game keeps a count of the X and O symbols of each line. Playing a box only updates the
+ * lines through it, and the move wins as soon as one of them holds numberWin symbols.
+ * The index only depends on the board size, so it is built once and shared by every game.
+ */
+public class LineIndex {
+    // Indexes already built, by board size
+    private static final ConcurrentHashMap<String, LineIndex> cache = new ConcurrentHashMap<>();
+
+    private final int numberWin;
+
+    // Line k starts at box lineStart[k] and goes lineStep[k] boxes at a time
+    private final int[] lineStart;
+    private final int[] lineStep;
+
+    // The lines through box i are cellLines[cellLinesStart[i]] to cellLines[cellLinesStart[i + 1] - 1]
+    private final int[] cellLinesStart;
+    private final int[] cellLines;
+
+    /**
+     * Returns the line index of a board, building it the first time this size is asked for.
+     *
+     * @param rows Number of rows on the board
+     * @param columns Number of columns on the board
+     * @param numberWin Number of consecutive symbols needed to win
+     * @return the shared index
+     */
+    public static LineIndex of(int rows, int columns, int numberWin) {
+        return cache.computeIfAbsent(rows + "x" + columns + "/" + numberWin, key -> new LineIndex(rows, columns, numberWin));
+    }
+
+    private LineIndex(int rows, int columns, int numberWin) {
+        this.numberWin = numberWin;
+
+        // Every line of numberWin boxes: horizontal, vertical and both diagonals
+        ArrayList<Integer> starts = new ArrayList<>();
+        ArrayList<Integer> steps = new ArrayList<>();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                for (int[] direction : directions) {
+                    int endRow = r + direction[0] * (numberWin - 1);
+                    int endCol = c + direction[1] * (numberWin - 1);
+                    if (endRow < rows && endCol >= 0 && endCol < columns) {
+                        starts.add(r * columns + c);
+                        steps.add(direction[0] * columns + direction[1]);
+                    }
+                }
+            }
+        }
+        lineStart = starts.stream().mapToInt(Integer::intValue).toArray();
+        lineStep = steps.stream().mapToInt(Integer::intValue).toArray();
+
+        // Count the lines through each box, then list them
+        cellLinesStart = new int[rows * columns + 1];
+        for (int k = 0; k < lineStart.length; k++) {
+            for (int j = 0; j < numberWin; j++) {
+                cellLinesStart[lineStart[k] + j * lineStep[k] + 1]++;
+            }
+        }
+        for (int i = 0; i < rows * columns; i++) {
+            cellLinesStart[i + 1] += cellLinesStart[i];
+        }
+        cellLines = new int[cellLinesStart[rows * columns]];
+        int[] filled = new int[rows * columns];
+        for (int k = 0; k < lineStart.length; k++) {
+            for (int j = 0; j < numberWin; j++) {
+                int i = lineStart[k] + j * lineStep[k];
+                cellLines[cellLinesStart[i] + filled[i]++] = k;
+            }
+        }
+    }
+
+    // Number of lines on the board
+    public int getLineCount() {return lineStart.length;}
+
+    // Number of boxes in a line
+    public int getNumberWin() {return numberWin;}
+
+    /**
+     * Returns the j-th box of a line.
+     *
+     * @param line index of the line
+     * @param j position in the line, from 0 to numberWin - 1
+     * @return linear index of the box
+     */
+    public int cellOf(int line, int j) {
+        return lineStart[line] + j * lineStep[line];
+    }
+
+    // Position in getCellLine() of the first line through box i
+    public int firstLineOf(int i) {return cellLinesStart[i];}
+
+    // Position in getCellLine() just after the last line through box i
+    public int endLineOf(int i) {return cellLinesStart[i + 1];}
+
+    // Line at position k of the lines through boxes, see firstLineOf() and endLineOf()
+    public int getCellLine(int k) {return cellLines[k];}
+}
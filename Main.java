@@ -1,4 +1,6 @@
 import java.io.Console;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -14,6 +16,10 @@ public class Main {
     private static int player1Win = 0;
     private static int player2Win = 0;
 
+    // Log every finished game is appended to, opened with the first one, null if it can't be written
+    private static GameLog gameLog;
+    private static boolean recordGames = true;
+
     /**
      * Prompts the user to input the number of players for the game (1 or 2).
      * Keeps asking until a valid integer 1 or 2 is entered.
@@ -55,8 +61,9 @@ public class Main {
         players.add(player1);
 
         // Add second player:  Computer if 1 player, else User (2 players)
+        Computer computer = null;
         if (n == 1) {
-            Computer computer = new Computer();
+            computer = new Computer();
             players.add(computer);
         } else {
             User player2 = new User();
@@ -70,14 +77,42 @@ public class Main {
 
             // Main game loop: runs until the game state changes from PLAYING
         while (game.getGameState() == GameState.PLAYING) {
-            players.get(turn % 2).play(game);
+            Player player = players.get(turn % 2);
+            // The computer searches its answers while the user thinks
+            if (computer != null && player != computer) {
+                computer.startPondering(game);
+            }
+            player.play(game);
             turn++;
         }
+        if (computer != null) {
+            computer.stopPondering();
+        }
 
         // Print final board state and game result
         endGame(game, n);
     }
 
+    /**
+     * Appends a finished game to the log of the games directory, see GameLog.
+     * The game is written at once, as the program may be closed at any time.
+     *
+     * @param game the finished game
+     */
+    private static void record(Game game) {
+        if (!recordGames || !GameLog.canRecord(game)) return; // Boards too big for the log are not recorded
+        try {
+            if (gameLog == null) {
+                gameLog = GameLog.open(Path.of("games"));
+            }
+            gameLog.append(game);
+            gameLog.flush();
+        } catch (IOException e) {
+            System.out.println("Games are no longer recorded: " + e);
+            recordGames = false;
+        }
+    }
+
     /**
      * Handles the end of a game session:
      * - Prints the final game board and result.
@@ -97,6 +132,7 @@ public class Main {
         // Update win counters
         if (gameState == GameState.X_WIN) player1Win++;
         if (gameState == GameState.O_WIN) player2Win++;
+        record(game);
 
         // Display current stats
         System.out.println("\n==============================\nCurrent game statistics:\n" + "Player 1 wins: " + player1Win + "\nPlayer 2 wins: " + player2Win + "\n==============================");
@@ -105,7 +141,7 @@ public class Main {
         boolean stop = false;
         while (!stop) {
             try {
-                int select = Integer.parseInt(console.readLine("\n'1' to play again.\n'2' to change number of players.\n'3' to change AI difficulty.\n'0' to exit, change game or board size.\nSelect: "));
+                int select = Integer.parseInt(console.readLine("\n'1' to play again.\n'2' to change number of players.\n'3' to change AI difficulty.\n'4' to change the number of AI threads.\n'5' to change the AI search.\n'6' to turn AI pondering on or off.\n'0' to exit, change game or board size.\nSelect: "));
                 switch (select) {
                     case 0:
                         System.out.println("");
@@ -142,8 +178,36 @@ public class Main {
                             System.out.println(e);
                         }
                         break;
+                    case 4:
+                        try {
+                            int threads = Integer.parseInt(console.readLine("\nThe AI can think on several threads. Current: " + Computer.getThreads() + ". \nEnter the number of threads (recommended: number of cores): "));
+                            Computer.setThreads(threads);
+                        } catch (Exception e) {
+                            System.out.println(e);
+                        }
+                        break;
+                    case 5:
+                        try {
+                            SearchStrategy[] strategies = SearchStrategy.values();
+                            String prompt = "\nSearch used on boards too big for perfect play. Current: " + Computer.getStrategy() + "\nType :\n";
+                            for (int i = 0; i < strategies.length; i++) {
+                                prompt += "'" + (i + 1) + "' for " + strategies[i] + "\n";
+                            }
+                            int choice = Integer.parseInt(console.readLine(prompt + "Select: "));
+                            if (choice < 1 || choice > strategies.length) {
+                                throw new IllegalArgumentException(choice + " is an invalid entry.");
+                            }
+                            Computer.setStrategy(strategies[choice - 1]);
+                        } catch (Exception e) {
+                            System.out.println(e);
+                        }
+                        break;
+                    case 6:
+                        Computer.setPondering(!Computer.getPondering());
+                        System.out.println("AI pondering (thinking during your turn) is now " + (Computer.getPondering() ? "on" : "off"));
+                        break;
                     default:
-                        throw new IllegalArgumentException(select + " is an invalid selection. Choose 1, 2 or 3.");
+                        throw new IllegalArgumentException(select + " is an invalid selection. Choose 1, 2, 3, 4, 5 or 6.");
                 }
             } catch (Exception e) {
                 System.out.println(e);
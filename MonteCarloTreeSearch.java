@@ -0,0 +1,355 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.random.RandomGenerator;
+
+/**
+ * Monte Carlo Tree Search using the UCT (Upper Confidence bounds applied to Trees) formula.
+ *
+ * The nodes of the tree are stored in preallocated parallel arrays (an arena) and referred
+ * to by their index, so building a tree creates no objects and the arena is reused from
+ * one search to the next. The children of a node are stored next to each other, after their parent.
+ *
+ * The tree is kept from one search to the next: when the game has gone on from the root
+ * of the previous search by moves that are in the tree, the subtree of the new position
+ * becomes the tree and the rest of the arena is freed.
+ */
+public class MonteCarloTreeSearch {
+    // Default number of nodes in the arena
+    public static final int DEFAULT_CAPACITY = 1 << 19;
+
+    // Exploration constant of the UCT formula
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    private final int capacity;
+    private int size; // Number of nodes currently used, node 0 is the root
+
+    // Node arena
+    private final int[] visits; // Number of playouts that went through the node
+    private final float[] wins; // Score of those playouts for the player who played the node's move
+    private final int[] move; // Move played to reach the node
+    private final int[] firstChild; // Index of the first child, -1 if the node is not expanded
+    private final int[] childCount; // Number of children
+
+    // Set by another thread to stop the search early
+    private final AtomicBoolean stop;
+
+    // Position at the root of the tree, to find it again at the next search, and the game it belongs to
+    private long rootHash;
+    private int rootRound = -1;
+    private Class<?> rootClass;
+    private int rootRows;
+    private int rootColumns;
+    private int rootNumberWin;
+
+    // Playouts of the tree kept from the previous search, and iterations of the last search
+    private int reusedVisits;
+    private int iterations;
+    private double value;
+
+    // New index of each node kept when the tree is advanced, allocated on first use
+    private int[] remap;
+
+    // Nodes visited by the current iteration, from the root
+    private int[] path = new int[1];
+
+    // Moves buffer used to expand the nodes
+    private int[] moves = new int[0];
+
+    /**
+     * Creates a search with an arena of the default size.
+     */
+    public MonteCarloTreeSearch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a search with an arena of the given number of nodes.
+     *
+     * @param capacity maximum number of nodes in the tree
+     */
+    public MonteCarloTreeSearch(int capacity) {
+        this(capacity, new AtomicBoolean());
+    }
+
+    /**
+     * Creates a search with an arena of the given number of nodes,
+     * which also stops as soon as the given flag is set.
+     *
+     * @param capacity maximum number of nodes in the tree
+     * @param stop flag set by another thread to stop the search early
+     */
+    public MonteCarloTreeSearch(int capacity, AtomicBoolean stop) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The tree needs room for at least 1 node.");
+        }
+        this.capacity = capacity;
+        this.stop = stop;
+        this.visits = new int[capacity];
+        this.wins = new float[capacity];
+        this.move = new int[capacity];
+        this.firstChild = new int[capacity];
+        this.childCount = new int[capacity];
+    }
+
+    // Getters for the last search
+    public int getReusedVisits() {return reusedVisits;}
+
+    public int getIterations() {return iterations;}
+
+    // Value of the position for the player to move, from -1 to 1: the score of the most visited move
+    public double getValue() {return value;}
+
+    // Number of nodes in the tree
+    public int getSize() {return size;}
+
+    /**
+     * Grows the tree of the current position until the deadline passes, or until the most
+     * visited move of the root can't be overtaken any more, and returns that move.
+     * The tree of the previous search is kept if the current position is in it,
+     * otherwise a new tree is built.
+     * The game is played and undone in place and is left unchanged.
+     *
+     * @param game the current game state, which must still be PLAYING
+     * @param deadline time (System.nanoTime) at which the search stops
+     * @param rng random number generator used for the playouts
+     * @return the best move found
+     */
+    public int search(Game game, long deadline, RandomGenerator rng) {
+        int boxes = game.getRows() * game.getColumns();
+        if (moves.length < boxes) {
+            path = new int[boxes + 1];
+            moves = new int[boxes];
+        }
+        int root = findRoot(game);
+        if (root > 0) {
+            keepSubtree(root);
+        } else if (root < 0) {
+            size = 0;
+            newNode(-1);
+        }
+        reusedVisits = visits[0];
+        rootHash = game.getHash();
+        rootRound = game.getRound();
+        rootClass = game.getClass();
+        rootRows = game.getRows();
+        rootColumns = game.getColumns();
+        rootNumberWin = game.getNumberWin();
+
+        long startTime = System.nanoTime();
+        iterations = 0;
+        while (true) {
+            iterate(game, rng);
+            iterations++;
+            // Read the clock every few iterations only
+            if (iterations % TimeManager.CLOCK_CHECK != 0) continue;
+            long now = System.nanoTime();
+            if (now >= deadline || stop.get() || isDecided(now - startTime, deadline - now)) break;
+        }
+
+        // The arena was too small to even expand the root
+        if (childCount[0] == 0) {
+            game.getAvailableMoves(moves);
+            value = 0;
+            return moves[0];
+        }
+
+        // The most visited move is the most reliable one
+        int bestMove = -1;
+        int mostVisits = -1;
+        for (int child = firstChild[0]; child < firstChild[0] + childCount[0]; child++) {
+            if (visits[child] > mostVisits) {
+                mostVisits = visits[child];
+                bestMove = move[child];
+                value = visits[child] == 0 ? 0 : 2.0 * wins[child] / visits[child] - 1;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Tells if the most visited move of the root is out of reach of the second one
+     * for the iterations left, expected at the speed of the search so far.
+     */
+    private boolean isDecided(long elapsedNanos, long remainingNanos) {
+        long best = 0;
+        long second = 0;
+        for (int child = firstChild[0]; child < firstChild[0] + childCount[0]; child++) {
+            if (visits[child] > best) {
+                second = best;
+                best = visits[child];
+            } else if (visits[child] > second) {
+                second = visits[child];
+            }
+        }
+        long remainingIterations = (long) ((double) iterations * remainingNanos / Math.max(1, elapsedNanos));
+        return childCount[0] > 0 && TimeManager.isDecided(best, second, remainingIterations);
+    }
+
+    /**
+     * Looks for the current position in the tree of the previous search, following
+     * the moves played since its root. It is the root itself if that search was stopped early.
+     *
+     * @param game the current game state
+     * @return the node of the current position, or -1 if it is not in the tree
+     */
+    private int findRoot(Game game) {
+        int played = game.getRound() - rootRound;
+        if (size == 0 || played < 0) return -1;
+        // Every game starts from the same hash, the tree may be of another kind of game
+        if (rootClass != game.getClass() || rootRows != game.getRows() || rootColumns != game.getColumns()
+                || rootNumberWin != game.getNumberWin()) return -1;
+
+        // The game must have gone on from the root of the previous search
+        for (int k = 0; k < played; k++) {
+            game.undo();
+        }
+        boolean sameGame = game.getHash() == rootHash;
+        for (int k = 0; k < played; k++) {
+            game.play(game.getMove(game.getRound()));
+        }
+        if (!sameGame) return -1;
+
+        int node = 0;
+        for (int round = rootRound; round < game.getRound(); round++) {
+            int child = -1;
+            for (int c = firstChild[node]; c < firstChild[node] + childCount[node]; c++) {
+                if (move[c] == game.getMove(round)) {
+                    child = c;
+                    break;
+                }
+            }
+            if (child < 0) return -1;
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * Makes the subtree of a node the whole tree, freeing the other nodes.
+     * Every child has a bigger index than its parent, so keeping the nodes of the subtree
+     * in the order of their indexes moves each of them down the arena, never over a node
+     * still to be moved.
+     *
+     * @param root the node becoming the root
+     */
+    private void keepSubtree(int root) {
+        if (remap == null) {
+            remap = new int[capacity];
+        }
+        // remap[i] is -1 for the nodes out of the subtree
+        Arrays.fill(remap, root, size, -1);
+        remap[root] = 0;
+        int kept = 0;
+        for (int node = root; node < size; node++) {
+            if (remap[node] < 0) continue;
+            remap[node] = kept;
+            for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+                remap[child] = 0; // In the subtree, its index is set when it is reached
+            }
+            visits[kept] = visits[node];
+            wins[kept] = wins[node];
+            move[kept] = move[node];
+            firstChild[kept] = firstChild[node];
+            childCount[kept] = childCount[node];
+            kept++;
+        }
+        size = kept;
+
+        // The children moved with their parents, but the first child indexes are still the old ones
+        for (int node = 0; node < size; node++) {
+            if (childCount[node] > 0) {
+                firstChild[node] = remap[firstChild[node]];
+            }
+        }
+        move[0] = -1;
+    }
+
+    /**
+     * Runs one iteration: selection, expansion, random playout and backpropagation.
+     */
+    private void iterate(Game game, RandomGenerator rng) {
+        int node = 0;
+        int depth = 0;
+        path[0] = node;
+
+        // Selection: go down the tree following the UCT formula
+        while (childCount[node] > 0 && game.getGameState() == GameState.PLAYING) {
+            node = selectChild(node);
+            game.play(move[node]);
+            path[++depth] = node;
+        }
+
+        // Expansion: add every move of the leaf, then continue through one of them
+        if (game.getGameState() == GameState.PLAYING && expand(node, game)) {
+            node = firstChild[node] + rng.nextInt(childCount[node]);
+            game.play(move[node]);
+            path[++depth] = node;
+        }
+
+        // Simulation: 1 if O wins, -1 if X wins, 0 for draw
+        int result = game.simulate(rng);
+
+        // Backpropagation: after undoing a node's move, the player to move is the one who played it
+        for (; depth > 0; depth--) {
+            node = path[depth];
+            game.undo();
+            visits[node]++;
+            if (result == 0) {
+                wins[node] += 0.5f;
+            } else if ((result == 1) == (game.nextBoxSymbol() == BoxSymbol.O)) {
+                wins[node] += 1;
+            }
+        }
+        visits[0]++;
+    }
+
+    /**
+     * Picks the child with the highest UCT value. Unvisited children are tried first.
+     */
+    private int selectChild(int node) {
+        double logVisits = Math.log(visits[node]);
+        int best = firstChild[node];
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+            if (visits[child] == 0) return child;
+            double value = wins[child] / visits[child] + EXPLORATION * Math.sqrt(logVisits / visits[child]);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds one child per legal move to the node, if the arena still has room for them.
+     * At the root, moves leading to symmetric boards share a single child.
+     *
+     * @return true if the node was expanded
+     */
+    private boolean expand(int node, Game game) {
+        int count = node == 0 ? game.getCanonicalMoves(moves) : game.getAvailableMoves(moves);
+        if (size + count > capacity) {
+            return false;
+        }
+        firstChild[node] = size;
+        childCount[node] = count;
+        for (int k = 0; k < count; k++) {
+            newNode(moves[k]);
+        }
+        return true;
+    }
+
+    /**
+     * Takes the next free node of the arena and clears it.
+     */
+    private int newNode(int m) {
+        int node = size++;
+        visits[node] = 0;
+        wins[node] = 0;
+        move[node] = m;
+        firstChild[node] = -1;
+        childCount[node] = 0;
+        return node;
+    }
+}
@@ -0,0 +1,57 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event recorded for each move decision of a computer, with the same values
+ * as SearchStats. The event lasts as long as the decision, so a recording shows the AI latency
+ * and throughput without a profiler:
+ * java -XX:StartFlightRecording:filename=ai.jfr TTTmain 7 7 5
+ * jfr print --events AdaptiveTicTacToe.ComputerMove ai.jfr
+ */
+@Name("AdaptiveTicTacToe.ComputerMove")
+@Label("Computer Move")
+@Category({"Adaptive Tic Tac Toe", "AI"})
+@Description("Move chosen by a computer player")
+public class MoveEvent extends jdk.jfr.Event {
+    @Label("Game")
+    String game;
+
+    @Label("Source")
+    @Description("How the move was chosen")
+    String source;
+
+    @Label("Move")
+    int move;
+
+    @Label("Value")
+    @Description("Value of the position for the player to move, from -1 (lost) to 1 (won)")
+    double value;
+
+    @Label("Round")
+    int round;
+
+    @Label("Thinking Time")
+    @Timespan(Timespan.MILLISECONDS)
+    long thinkingTime;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Playouts")
+    long playouts;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Table Probes")
+    long tableProbes;
+
+    @Label("Table Hits")
+    long tableHits;
+
+    @Label("Reused Visits")
+    long reusedVisits;
+}
@@ -0,0 +1,267 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Opening book: the best moves of the first positions of a game, computed offline
+ * and looked up during the game instead of searching.
+ *
+ * A book is a sorted binary file read through a memory-mapped buffer:
+ * - a header: magic number, version, game type (0 = TTT, 1 = C4), rows, columns, numberWin, number of entries
+ * - the entries sorted by position: the canonical hash of the position (8 bytes)
+ *   and its best move in the canonical frame (2 bytes)
+ * Positions are keyed by their canonical hash, so one entry covers all the symmetric positions.
+ * The book of a game is found in the working directory, see getFileName().
+ */
+public class OpeningBook {
+    private static final int MAGIC = 0x424F4F4B; // "BOOK"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 7 * Integer.BYTES;
+    private static final int ENTRY_SIZE = Long.BYTES + Short.BYTES;
+
+    // Books already opened, by file name, empty when the game has no book
+    private static final ConcurrentHashMap<String, Optional<OpeningBook>> books = new ConcurrentHashMap<>();
+
+    private final MappedByteBuffer buffer;
+    private final int size; // Number of positions in the book
+
+    /**
+     * Returns the book of a game, opening it the first time this game is asked for.
+     *
+     * @param game a game of the size the book is for
+     * @return the book, or null if there is no book for this game
+     */
+    public static OpeningBook forGame(Game game) {
+        return books.computeIfAbsent(getFileName(game), name -> {
+            Path path = Path.of(name);
+            if (!Files.isRegularFile(path)) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(new OpeningBook(path, game));
+            } catch (IOException e) {
+                System.out.println("Opening book " + name + " ignored: " + e.getMessage());
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    /**
+     * Name of the book file of a game, for example book_C4_6x7_4.bin.
+     */
+    public static String getFileName(Game game) {
+        return "book_" + game.getClass().getSimpleName() + "_" + game.getRows() + "x" + game.getColumns() + "_" + game.getNumberWin() + ".bin";
+    }
+
+    /**
+     * Maps a book file and checks that it was made for the given game.
+     *
+     * @throws IOException if the file can't be read or is not a book of this game
+     */
+    private OpeningBook(Path path, Game game) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("file too short");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("not an opening book");
+        }
+        if (buffer.getInt(8) != gameType(game) || buffer.getInt(12) != game.getRows()
+                || buffer.getInt(16) != game.getColumns() || buffer.getInt(20) != game.getNumberWin()) {
+            throw new IOException("made for another game");
+        }
+        size = buffer.getInt(24);
+        if (size < 0 || buffer.capacity() != HEADER_SIZE + (long) size * ENTRY_SIZE) {
+            throw new IOException("wrong number of entries");
+        }
+    }
+
+    // Number of positions in the book
+    public int getSize() {return size;}
+
+    /**
+     * Looks the position up by binary search on its canonical hash.
+     *
+     * @param game the current game state
+     * @return the best move of the position, or -1 if it is not in the book
+     */
+    public int lookup(Game game) {
+        long hash = game.getCanonicalHash();
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = HEADER_SIZE + middle * ENTRY_SIZE;
+            long key = buffer.getLong(position);
+            if (key < hash) {
+                low = middle + 1;
+            } else if (key > hash) {
+                high = middle - 1;
+            } else {
+                // Bring the move back from the canonical frame to the game
+                int move = buffer.getShort(position + Long.BYTES);
+                return game.symmetricMove(game.inverseSymmetry(game.getCanonicalSymmetry()), move);
+            }
+        }
+        return -1;
+    }
+
+    private static int gameType(Game game) {
+        return game instanceof C4 ? 1 : 0;
+    }
+
+    /**
+     * Generates the book of a game: every position reachable in fewer than the given number of moves
+     * is searched by a computer with perfect play and its best move is written to the book file.
+     *
+     * @param args expected as: game plies ms [threads]
+     *             game is ROWSxCOLUMNS/WIN for Tic Tac Toe or C4[:ROWSxCOLUMNS/WIN] for Connect 4,
+     *             plies the number of moves covered by the book
+     *             and ms the thinking time per position (1 to 10000)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: java OpeningBook <game> <plies> <ms> [threads]");
+            System.out.println("  game: ROWSxCOLUMNS/WIN for Tic Tac Toe (e.g. 4x4/3) or C4[:ROWSxCOLUMNS/WIN] for Connect 4");
+            return;
+        }
+        String gameName = args[0];
+        int plies = Integer.parseInt(args[1]);
+        int thinkingTime = Integer.parseInt(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        if (plies < 1) {
+            throw new IllegalArgumentException("The book must cover at least 1 move.");
+        }
+
+        Game game = Tournament.newGame(gameName);
+        Map<Long, int[]> positions = new LinkedHashMap<>();
+        collectPositions(game, plies, new int[plies], positions);
+        System.out.println("Opening book of " + gameName + ": " + positions.size() + " positions up to move " + plies
+                + ", " + thinkingTime + " ms each on " + threads + " threads");
+
+        long startTime = System.nanoTime();
+        long[] keys = new long[positions.size()];
+        int[] bestMoves = new int[positions.size()];
+        solve(gameName, positions, thinkingTime, threads, keys, bestMoves);
+        System.out.printf("Searched in %.1f s%n", (System.nanoTime() - startTime) / 1e9);
+
+        Path path = Path.of(getFileName(game));
+        write(path, game, keys, bestMoves);
+        System.out.println("Written to " + path);
+    }
+
+    /**
+     * Lists the positions where a move is played in the first plies of the game, once per canonical hash,
+     * along with the moves leading to them.
+     *
+     * @param game the current game state, played and undone in place
+     * @param plies number of moves covered by the book
+     * @param line moves leading to the current position
+     * @param positions positions found so far, by canonical hash
+     */
+    private static void collectPositions(Game game, int plies, int[] line, Map<Long, int[]> positions) {
+        int round = game.getRound();
+        if (game.getGameState() != GameState.PLAYING || round >= plies) return;
+        // A transposition: the position and what follows it are already listed
+        if (positions.putIfAbsent(game.getCanonicalHash(), Arrays.copyOf(line, round)) != null) return;
+
+        int[] moves = new int[game.getRows() * game.getColumns()];
+        int count = game.getCanonicalMoves(moves);
+        for (int k = 0; k < count; k++) {
+            line[round] = moves[k];
+            game.play(moves[k]);
+            collectPositions(game, plies, line, positions);
+            game.undo(moves[k]);
+        }
+    }
+
+    /**
+     * Searches the best move of every position on a pool of threads.
+     *
+     * @param keys receives the canonical hash of each position
+     * @param bestMoves receives the best move of each position in the canonical frame
+     */
+    private static void solve(String gameName, Map<Long, int[]> positions, int thinkingTime, int threads, long[] keys, int[] bestMoves) {
+        // One computer per thread, without a book so that an older book is not copied, and the same time for every position
+        ThreadLocal<Computer> computers = ThreadLocal.withInitial(() -> {
+            Computer computer = new Computer(SearchStrategy.ALPHA_BETA, thinkingTime, true, 1);
+            computer.setVerbose(false);
+            computer.setOpeningBook(false);
+            computer.setTimeManagement(false);
+            return computer;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<>(positions.size());
+        int index = 0;
+        for (int[] line : positions.values()) {
+            int n = index++;
+            results.add(pool.submit(() -> {
+                Game game = Tournament.newGame(gameName);
+                for (int move : line) {
+                    game.play(move);
+                }
+                int move = computers.get().chooseMove(game);
+                keys[n] = game.getCanonicalHash();
+                bestMoves[n] = game.symmetricMove(game.getCanonicalSymmetry(), move);
+            }));
+        }
+        try {
+            for (int k = 0; k < results.size(); k++) {
+                results.get(k).get();
+                if ((k + 1) % 100 == 0) {
+                    System.out.println((k + 1) + " / " + results.size() + " positions");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Book generation interrupted");
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the book file, entries sorted by canonical hash.
+     */
+    private static void write(Path path, Game game, long[] keys, int[] bestMoves) throws IOException {
+        Integer[] order = new Integer[keys.length];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + keys.length * ENTRY_SIZE);
+        data.putInt(MAGIC).putInt(VERSION).putInt(gameType(game))
+                .putInt(game.getRows()).putInt(game.getColumns()).putInt(game.getNumberWin()).putInt(keys.length);
+        for (int k : order) {
+            data.putLong(keys[k]).putShort((short) bestMoves[k]);
+        }
+        data.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+}
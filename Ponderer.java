@@ -0,0 +1,140 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pondering: searches the computer's answers to the opponent's moves while the opponent thinks.
+ *
+ * The searches run on a daemon thread, with a computer of their own on a copy of the game,
+ * starting with the move the opponent is the most likely to play. The answers are kept by
+ * canonical hash, in the canonical frame, so an answer also serves the symmetric positions.
+ * Once the opponent has moved, the computer stops the pondering and plays the answer at once
+ * if the position was searched. If its search was under way, the computer takes the searches
+ * of the ponderer and goes on from where it stopped.
+ */
+public class Ponderer {
+    // Computer running the background searches, with the settings of the computer it ponders for
+    private final Computer computer;
+
+    // Best move of each position searched, by canonical hash, in the canonical frame
+    private final ConcurrentHashMap<Long, Integer> answers = new ConcurrentHashMap<>();
+
+    // Thread of the current pondering, null when not pondering
+    private Thread thread;
+
+    // Position whose search was stopped when the opponent moved, by hash, if searchStopped
+    private boolean searchStopped;
+    private long stoppedHash;
+
+    /**
+     * Creates a ponderer searching with the given computer.
+     *
+     * @param computer the computer used for the background searches, used by no other thread
+     */
+    public Ponderer(Computer computer) {
+        this.computer = computer;
+    }
+
+    /**
+     * Starts searching the answers to every move of the opponent in the background.
+     * The answers of the previous pondering are forgotten.
+     *
+     * @param game the current game state, with the opponent to move
+     */
+    public synchronized void start(Game game) {
+        stop();
+        answers.clear();
+        searchStopped = false;
+        if (game.getGameState() != GameState.PLAYING) return;
+
+        Game position = game.clone();
+        computer.resumeSearch();
+        thread = new Thread(() -> ponder(position), "Computer-ponder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the background search and waits for its thread to end.
+     * The current search is abandoned within a few thousand nodes.
+     */
+    public synchronized void stop() {
+        if (thread == null) return;
+        computer.stopSearch();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    /**
+     * Stops the background search and forgets its answers, for a computer that goes on with another game.
+     */
+    public synchronized void reset() {
+        stop();
+        answers.clear();
+        searchStopped = false;
+    }
+
+    /**
+     * Returns the answer found for the position, if it was searched.
+     *
+     * @param game the current game state
+     * @return the move to play, or -1 if the position was not searched
+     */
+    public int answer(Game game) {
+        Integer move = answers.get(game.getCanonicalHash());
+        if (move == null) return -1;
+        return game.symmetricMove(game.inverseSymmetry(game.getCanonicalSymmetry()), move);
+    }
+
+    /**
+     * Tells if the pondering was stopped while searching the position, in which case the searches
+     * of its computer hold the unfinished work: tree, transposition table and best move so far.
+     *
+     * @param game the current game state
+     * @return true if the position was being searched
+     */
+    public boolean wasSearching(Game game) {return searchStopped && stoppedHash == game.getHash();}
+
+    // Computer running the background searches, only to be used once stop() has returned
+    Computer getComputer() {return computer;}
+
+    /**
+     * Searches the answer to the most likely move of the opponent, then to the other moves.
+     * Every search is given the full thinking time of the computer.
+     *
+     * @param position copy of the game with the opponent to move, only used by the pondering thread
+     */
+    private void ponder(Game position) {
+        int predicted = computer.chooseMove(position);
+        if (computer.isSearchStopped()) return;
+        searchAnswer(position, predicted);
+
+        int[] replies = new int[position.getRows() * position.getColumns()];
+        int count = position.getCanonicalMoves(replies);
+        for (int k = 0; k < count && !computer.isSearchStopped(); k++) {
+            searchAnswer(position, replies[k]);
+        }
+    }
+
+    /**
+     * Searches and records the answer to one move of the opponent, unless it is already known.
+     */
+    private void searchAnswer(Game position, int reply) {
+        position.play(reply);
+        long hash = position.getCanonicalHash();
+        if (position.getGameState() == GameState.PLAYING && !answers.containsKey(hash)) {
+            int move = computer.chooseMove(position);
+            // An interrupted search is not reliable
+            if (!computer.isSearchStopped()) {
+                answers.put(hash, position.symmetricMove(position.getCanonicalSymmetry(), move));
+            } else {
+                // But the computer can go on with it
+                searchStopped = true;
+                stoppedHash = position.getHash();
+            }
+        }
+        position.undo(reply);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Statistics of one move decision of a computer, see Computer.getLastStats().
+ * Only the values that make sense for the search that chose the move are set, the others are 0.
+ */
+public class SearchStats {
+    /**
+     * How the move was chosen.
+     */
+    public enum Source {
+        PONDER, // Found while the opponent was thinking
+        BOOK, // Read from the opening book
+        TABLEBASE, // Read from the tablebase of a small board
+        FORCED, // Only legal move, immediate win or only move stopping an immediate win
+        MINIMAX, // Solved by minimax
+        C4_SOLVER, // Solved by the Connect 4 endgame solver
+        THREAT_SPACE, // Forced win or defence found by the threat-space search
+        ALPHA_BETA, // Iterative-deepening alpha-beta
+        MCTS, // Monte Carlo Tree Search
+        MONTE_CARLO // Flat Monte Carlo
+    }
+
+    private final Source source;
+    private final int move;
+    private final double value; // Value of the position for the player to move, see getValue()
+    private final int round; // Round the move is played at
+    private final long elapsedNanos; // Time taken to choose the move
+    private final int thinkingTime; // Time in ms the computer was given for this move
+    private final long nodes; // Positions searched, or tree nodes for MCTS
+    private final long playouts; // Random games played to the end
+    private final int depth; // Number of moves searched ahead, the whole game for the solvers
+    private final long tableProbes; // Transposition table lookups
+    private final long tableHits; // Lookups that found the position
+    private final long reusedVisits; // Playouts kept from the previous search
+
+    public SearchStats(Source source, int move, double value, int round, long elapsedNanos, int thinkingTime, long nodes,
+            long playouts, int depth, long tableProbes, long tableHits, long reusedVisits) {
+        this.source = source;
+        this.move = move;
+        this.value = value;
+        this.round = round;
+        this.elapsedNanos = elapsedNanos;
+        this.thinkingTime = thinkingTime;
+        this.nodes = nodes;
+        this.playouts = playouts;
+        this.depth = depth;
+        this.tableProbes = tableProbes;
+        this.tableHits = tableHits;
+        this.reusedVisits = reusedVisits;
+    }
+
+    // Getters
+    public Source getSource() {return source;}
+
+    public int getMove() {return move;}
+
+    /**
+     * Value of the position for the player to move, from -1 (lost) to 1 (won).
+     * The solvers and the tablebase give exactly -1, 0 or 1, the other searches an estimate,
+     * and moves that were not searched (book, pondering, forced moves and threat defences) have no value: NaN.
+     * Forced and threat-space wins are worth 1.
+     */
+    public double getValue() {return value;}
+
+    public int getRound() {return round;}
+
+    public long getElapsedNanos() {return elapsedNanos;}
+
+    public int getThinkingTime() {return thinkingTime;}
+
+    public long getNodes() {return nodes;}
+
+    public long getPlayouts() {return playouts;}
+
+    public int getDepth() {return depth;}
+
+    public long getTableProbes() {return tableProbes;}
+
+    public long getTableHits() {return tableHits;}
+
+    public long getReusedVisits() {return reusedVisits;}
+
+    // Share of the transposition table lookups that found the position, 0 without lookups
+    public double getTableHitRate() {return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;}
+
+    // Share of the thinking time used, above 1 when the search overran it
+    public double getTimeUsed() {return elapsedNanos / 1e6 / thinkingTime;}
+
+    @Override
+    public String toString() {
+        return String.format("%s: move %d (value %.2f) at round %d in %.1f ms (%.0f%% of %d ms), %d nodes, %d playouts, depth %d, table hits %.0f%% of %d, %d visits reused",
+                source, move + 1, value, round, elapsedNanos / 1e6, 100 * getTimeUsed(), thinkingTime, nodes, playouts, depth,
+                100 * getTableHitRate(), tableProbes, reusedVisits);
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Search algorithms the computer can use when the board is too big for perfect play.
+ */
+public enum SearchStrategy {
+    MONTE_CARLO, // Flat Monte Carlo: random playouts from every root move
+    MCTS, // Monte Carlo Tree Search guided by the UCT formula
+    ALPHA_BETA // Iterative-deepening alpha-beta with an open-line evaluation
+}
@@ -1,12 +1,43 @@
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
 
 /**
  * Tic-Tac-Toe game implementation extending the abstract Game class.
+ *
+ * Large boards (gomoku-style 15x15/5, 19x19/5) are played in large-board mode: the moves offered
+ * to the search and the playouts are only the empty boxes within a radius of a symbol, hardly ever
+ * more than a few dozen instead of hundreds. These candidate boxes are kept up to date by play()
+ * and undo(), which only visit the neighbourhood of the box played.
  */
 public class TTT extends Game {
+    // Boards of more boxes than this are played in large-board mode by default
+    public static final int LARGE_BOARD = 144;
+    public static final int DEFAULT_RADIUS = 2;
+
+    // Neighbour lists of each board size and radius, shared by the games: {neighbourStart, neighbours}
+    private static final ConcurrentHashMap<String, int[][]> neighbourhoods = new ConcurrentHashMap<>();
+
     // The board is represented as a one-dimensional array of BoxSymbols (X, O, or null)
     private BoxSymbol[] board;
 
+    // Large-board mode: candidate moves are the empty boxes at most radius rows and columns away
+    // from a symbol. A radius of 0 turns the mode off, every empty box being a move.
+    private final int radius;
+    private int[] neighbourStart; // Boxes near box i: neighbours[neighbourStart[i]] to neighbours[neighbourStart[i + 1] - 1]
+    private int[] neighbours;
+    private int[] near; // Number of symbols near each box
+    private int[] candidates; // Empty boxes near a symbol, in candidates[0] to candidates[candidateCount - 1]
+    private int[] candidateIndex; // Index of each box in candidates, -1 if it is not a candidate
+    private int candidateCount;
+    private int[] playoutMark; // Candidates of the current playout are marked with playoutStamp
+    private int playoutStamp;
+
+    // Scratch copies used by simulate(): the empty boxes and the line counts
+    private int[] playoutEmpty;
+    private int[] playoutXCount;
+    private int[] playoutOCount;
+
     /**
      * Default constructor creating a standard 3x3 Tic-Tac-Toe game
      * requiring 3 symbols in a row to win.
@@ -18,23 +49,131 @@ public class TTT extends Game {
     /**
      * Constructor allowing custom board size and winning condition.
      * Initializes the game board and sets initial game state.
+     * Boards of more than LARGE_BOARD boxes are played in large-board mode with the default radius.
      * 
      * @param rows Number of rows on the board
      * @param columns Number of columns on the board
      * @param numberWin Number of consecutive symbols needed to win
      */
     public TTT(int rows, int columns, int numberWin) {
+        this(rows, columns, numberWin, rows * columns > LARGE_BOARD ? DEFAULT_RADIUS : 0);
+    }
+
+    /**
+     * Constructor choosing the large-board mode.
+     *
+     * @param rows Number of rows on the board
+     * @param columns Number of columns on the board
+     * @param numberWin Number of consecutive symbols needed to win
+     * @param radius distance in rows and columns from the symbols within which the moves are searched,
+     *               0 to search every empty box
+     */
+    public TTT(int rows, int columns, int numberWin, int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("The radius can't be negative: " + radius);
+        }
+        this.radius = radius;
         this.rows = rows;
         this.columns = columns;
         this.numberWin = numberWin;
         this.board = new BoxSymbol[rows * columns];
+        this.history = new int[rows * columns];
         this.round = 0;
         this.gameState = GameState.PLAYING;
+        initHashing(() -> symmetries(rows, columns));
+        initLines();
+        if (radius > 0) initCandidates();
     }
 
-    // Getter for the number of symbols required to win.
-    public int getNumberWin() {
-        return numberWin;
+    /**
+     * Copy constructor used by clone(): shares the tables of the other game and copies its board.
+     */
+    private TTT(TTT other) {
+        copyState(other);
+        this.radius = other.radius;
+        this.board = other.board.clone();
+        if (radius > 0) {
+            this.neighbourStart = other.neighbourStart;
+            this.neighbours = other.neighbours;
+            this.near = other.near.clone();
+            this.candidates = other.candidates.clone();
+            this.candidateIndex = other.candidateIndex.clone();
+            this.candidateCount = other.candidateCount;
+        }
+    }
+
+    /**
+     * Takes the neighbours of every box, the boxes within radius rows and columns,
+     * and starts with no candidate.
+     */
+    private void initCandidates() {
+        int boxes = rows * columns;
+        int[][] neighbourhood = neighbourhoods.computeIfAbsent(rows + "x" + columns + "/" + radius,
+                key -> neighbourhood(rows, columns, radius));
+        neighbourStart = neighbourhood[0];
+        neighbours = neighbourhood[1];
+        near = new int[boxes];
+        candidates = new int[boxes];
+        candidateIndex = new int[boxes];
+        Arrays.fill(candidateIndex, -1);
+        candidateCount = 0;
+    }
+
+    /**
+     * Lists the neighbours of every box: the boxes near box i are
+     * neighbours[neighbourStart[i]] to neighbours[neighbourStart[i + 1] - 1].
+     *
+     * @return {neighbourStart, neighbours}
+     */
+    private static int[][] neighbourhood(int rows, int columns, int radius) {
+        int boxes = rows * columns;
+        int[] neighbourStart = new int[boxes + 1];
+        int[] list = new int[boxes * (2 * radius + 1) * (2 * radius + 1)];
+        int count = 0;
+        for (int i = 0; i < boxes; i++) {
+            neighbourStart[i] = count;
+            int r = i / columns;
+            int c = i % columns;
+            for (int nr = Math.max(0, r - radius); nr <= Math.min(rows - 1, r + radius); nr++) {
+                for (int nc = Math.max(0, c - radius); nc <= Math.min(columns - 1, c + radius); nc++) {
+                    if (nr != r || nc != c) list[count++] = nr * columns + nc;
+                }
+            }
+        }
+        neighbourStart[boxes] = count;
+        return new int[][] {neighbourStart, Arrays.copyOf(list, count)};
+    }
+
+    // Radius of the large-board mode, 0 when it is off
+    public int getRadius() {return radius;}
+
+    /**
+     * Builds the symmetries of a board as permutations of its boxes:
+     * the identity, both mirrors and the half turn, plus the quarter turns and
+     * both diagonal mirrors when the board is square (8 symmetries in total).
+     *
+     * @param rows Number of rows on the board
+     * @param columns Number of columns on the board
+     * @return one permutation per symmetry, starting with the identity
+     */
+    private static int[][] symmetries(int rows, int columns) {
+        int[][] symmetries = new int[rows == columns ? 8 : 4][rows * columns];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                int i = r * columns + c;
+                symmetries[0][i] = i;
+                symmetries[1][i] = r * columns + (columns - 1 - c); // Left-right mirror
+                symmetries[2][i] = (rows - 1 - r) * columns + c; // Top-bottom mirror
+                symmetries[3][i] = (rows - 1 - r) * columns + (columns - 1 - c); // Half turn
+                if (rows == columns) {
+                    symmetries[4][i] = c * columns + r; // Main diagonal mirror
+                    symmetries[5][i] = (columns - 1 - c) * columns + (rows - 1 - r); // Anti-diagonal mirror
+                    symmetries[6][i] = c * columns + (rows - 1 - r); // Quarter turn clockwise
+                    symmetries[7][i] = (columns - 1 - c) * columns + r; // Quarter turn counterclockwise
+                }
+            }
+        }
+        return symmetries;
     }
 
     /**
@@ -52,48 +191,174 @@ public class TTT extends Game {
     }
 
     /**
-     * Returns a list of available (empty) positions where moves can still be played.
+     * Writes the available (empty) positions where moves can still be played.
+     * In large-board mode, only the empty boxes near a symbol, or the center box on an empty board.
      * 
-     * @return an ArrayList of integer indexes representing empty board positions
+     * @param moves array receiving the indexes of the empty board positions
+     * @return the number of empty positions
      */
-    public ArrayList<Integer> getAvailableMoves() {
-        ArrayList<Integer> availableMoves = new ArrayList<>();
-        for (int i = 0; i < getRows()*getColumns(); i++) {
-            if (boxSymbolAt(i) == null) {
-                availableMoves.add(i);
+    public int getAvailableMoves(int[] moves) {
+        if (radius > 0) {
+            if (round == 0) {
+                moves[0] = (rows / 2) * columns + columns / 2;
+                return 1;
+            }
+            System.arraycopy(candidates, 0, moves, 0, candidateCount);
+            return candidateCount;
+        }
+        int count = 0;
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] == null) {
+                moves[count++] = i;
             }
         }
-        return availableMoves;
+        return count;
     }
 
      /**
      * Creates and returns a deep copy of the current game state.
      * Useful for simulations and AI algorithms.
+     * The tables that only depend on the board size are shared with the copy.
      * 
      * @return a cloned TTT instance with the same state as this one
      */
     public TTT clone() {
-        TTT copy = new TTT(this.rows, this.columns, this.numberWin);
-        copy.round = this.round;
-        copy.gameState = this.gameState;
-        copy.board = this.board.clone();
-        return copy;
-    }    
+        return new TTT(this);
+    }
 
     /**
      * Plays a move at the given index by setting the next symbol on the board.
-     * Then calls update() to check and update the game state accordingly.
+     * Then calls update() to count it in its lines and update the game state accordingly.
      * 
      * @param i the index where the current player wants to play
      */
     public void play(int i) {
         board[i] = this.nextBoxSymbol();
+        toggleHash(i, board[i]);
+        history[round] = i;
+        if (radius > 0) addNear(i);
         update(i);
     }
 
+    /**
+     * Takes back the move at index i by emptying the box.
+     *
+     * @param i the index of the last move played
+     */
+    public void undo(int i) {
+        toggleHash(i, board[i]);
+        removeFromLines(i, board[i]);
+        board[i] = null;
+        if (radius > 0) removeNear(i);
+        round--;
+        gameState = GameState.PLAYING;
+    }
+
+    /**
+     * Updates the candidates for a symbol just placed in box i: the box is no longer
+     * a candidate and its empty neighbours become candidates.
+     */
+    private void addNear(int i) {
+        removeCandidate(i);
+        for (int k = neighbourStart[i]; k < neighbourStart[i + 1]; k++) {
+            int j = neighbours[k];
+            if (near[j]++ == 0 && board[j] == null) addCandidate(j);
+        }
+    }
+
+    /**
+     * Updates the candidates for a symbol just removed from box i, undoing addNear(i).
+     */
+    private void removeNear(int i) {
+        for (int k = neighbourStart[i]; k < neighbourStart[i + 1]; k++) {
+            int j = neighbours[k];
+            if (--near[j] == 0 && board[j] == null) removeCandidate(j);
+        }
+        if (near[i] > 0) addCandidate(i);
+    }
+
+    private void addCandidate(int i) {
+        candidateIndex[i] = candidateCount;
+        candidates[candidateCount++] = i;
+    }
+
+    // Removes a box from the candidates by moving the last candidate in its place
+    private void removeCandidate(int i) {
+        int k = candidateIndex[i];
+        if (k < 0) return;
+        int last = candidates[--candidateCount];
+        candidates[k] = last;
+        candidateIndex[last] = k;
+        candidateIndex[i] = -1;
+    }
+
+    /**
+     * Plays a random game from the current state without touching the board.
+     * The empty boxes are kept in an array from which each move is removed by swapping
+     * it with the last one, and the moves are only counted in scratch copies of the
+     * line counts, which is all that is needed to find the winner.
+     * In large-board mode, the array starts with the candidates and the empty neighbours
+     * of each box played are added to it, marked so that they are added only once.
+     *
+     * @param rng the random number generator used to pick the moves
+     * @return 1 if O wins, -1 if X wins, 0 for draw
+     */
+    @Override
+    public int simulate(RandomGenerator rng) {
+        if (gameState != GameState.PLAYING) return result();
+        if (playoutEmpty == null) {
+            playoutEmpty = new int[board.length];
+            playoutXCount = new int[xCount.length];
+            playoutOCount = new int[oCount.length];
+        }
+        int empty = getAvailableMoves(playoutEmpty);
+        if (radius > 0) {
+            if (playoutMark == null || ++playoutStamp == 0) {
+                playoutMark = new int[board.length];
+                playoutStamp = 1;
+            }
+            for (int k = 0; k < empty; k++) {
+                playoutMark[playoutEmpty[k]] = playoutStamp;
+            }
+        }
+        System.arraycopy(xCount, 0, playoutXCount, 0, xCount.length);
+        System.arraycopy(oCount, 0, playoutOCount, 0, oCount.length);
+
+        boolean xToPlay = nextBoxSymbol() == BoxSymbol.X;
+        while (empty > 0) {
+            // Take a random empty box out of the array
+            int k = rng.nextInt(empty);
+            int i = playoutEmpty[k];
+            playoutEmpty[k] = playoutEmpty[--empty];
+
+            int[] count = xToPlay ? playoutXCount : playoutOCount;
+            for (int j = lines.firstLineOf(i); j < lines.endLineOf(i); j++) {
+                if (++count[lines.getCellLine(j)] >= numberWin) {
+                    return xToPlay ? -1 : 1;
+                }
+            }
+            if (radius > 0) {
+                for (int n = neighbourStart[i]; n < neighbourStart[i + 1]; n++) {
+                    int j = neighbours[n];
+                    if (board[j] == null && playoutMark[j] != playoutStamp) {
+                        playoutMark[j] = playoutStamp;
+                        playoutEmpty[empty++] = j;
+                    }
+                }
+            }
+            xToPlay = !xToPlay;
+        }
+        return 0;
+    }
+
     @Override
     public void reset() {
         super.reset();
         board = new BoxSymbol[rows * columns];
+        if (radius > 0) {
+            Arrays.fill(near, 0);
+            Arrays.fill(candidateIndex, -1);
+            candidateCount = 0;
+        }
     }
 }
\ No newline at end of file
@@ -5,7 +5,9 @@ public class TTTmain {
      * If invalid or no arguments are provided, it defaults to a standard 3x3 game with 3 in a row to win.
      * Then it launches the game with user-chosen number of players.
      * 
-     * @param args command-line arguments expected as: rows columns numberToWin
+     * @param args command-line arguments expected as: rows columns numberToWin [radius],
+     *             radius being the distance from the symbols within which the AI looks for moves
+     *             (0 for every empty box, by default 2 on boards of more than 144 boxes)
      */
     public static void main(String[] args) {
         TTT game;
@@ -24,7 +26,7 @@ public class TTTmain {
             }
 
             // Create a new game instance with custom parameters
-            game = new TTT(rows, columns, win);
+            game = args.length > 3 ? new TTT(rows, columns, win, Integer.parseInt(args[3])) : new TTT(rows, columns, win);
         } catch (Exception e) {
             // If any error occurs (missing args, wrong format, invalid conditions),
             // fallback to the default 3x3 Tic-Tac-Toe game
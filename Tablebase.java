@@ -0,0 +1,346 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tablebase of a small Tic Tac Toe board: the result of every reachable position under perfect play,
+ * solved once offline, so that the computer plays perfect moves by looking up each move instead of searching.
+ *
+ * A position is indexed by the ternary number of its board: box i holds the digit 0 (empty), 1 (X) or 2 (O)
+ * of weight 3^i. Every board has its own index, so boards of up to MAX_BOXES boxes take 3^16 indexes at most.
+ * Each index has a 4-bit code, two per byte (the low half for the even indexes):
+ * - 0: the position can't be reached in a game
+ * - DRAW: the game ends in a draw
+ * - any other code c: the game is won by the move of round c + 1, so by X if c is even and by O otherwise.
+ *   The distance to the end is that round minus the current one: wins are as fast and losses as slow as possible.
+ *   A win takes 2 symbols at least, so the winning round is 3 to 16 and the code 2 to 15.
+ *
+ * The file holds a header (magic number, version, rows, columns, numberWin) and the codes,
+ * and is read through a memory-mapped buffer. The tablebase of a game is found in the working directory,
+ * see getFileName().
+ *
+ * The tablebase is built by retrograde analysis over the indexes: a move adds a digit, so the positions
+ * after a move have bigger indexes. A pass in increasing order marks the positions reachable from the
+ * empty board, and a pass in decreasing order solves each one from the positions after its moves.
+ */
+public class Tablebase {
+    // Biggest board: 3^16 indexes, 21.5 MB
+    public static final int MAX_BOXES = 16;
+
+    private static final int MAGIC = 0x54424153; // "TBAS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+
+    // Codes of the positions that can't be reached and of the drawn positions
+    private static final int UNREACHABLE = 0;
+    private static final int DRAW = 1;
+
+    // Tablebases already opened, by file name, empty when the game has no tablebase
+    private static final ConcurrentHashMap<String, Optional<Tablebase>> tablebases = new ConcurrentHashMap<>();
+
+    private final MappedByteBuffer buffer;
+    private final int[] weights; // 3^i, the weight of box i in the index
+
+    /**
+     * Returns the tablebase of a game, opening it the first time this game is asked for.
+     *
+     * @param game a game of the size the tablebase is for
+     * @return the tablebase, or null if there is none for this game
+     */
+    public static Tablebase forGame(Game game) {
+        if (!(game instanceof TTT) || game.getRows() * game.getColumns() > MAX_BOXES) {
+            return null;
+        }
+        return tablebases.computeIfAbsent(getFileName(game), name -> {
+            Path path = Path.of(name);
+            if (!Files.isRegularFile(path)) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(new Tablebase(path, game));
+            } catch (IOException e) {
+                System.out.println("Tablebase " + name + " ignored: " + e.getMessage());
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    /**
+     * Name of the tablebase file of a game, for example tablebase_TTT_4x4_3.bin.
+     */
+    public static String getFileName(Game game) {
+        return "tablebase_" + game.getClass().getSimpleName() + "_" + game.getRows() + "x" + game.getColumns() + "_" + game.getNumberWin() + ".bin";
+    }
+
+    /**
+     * Maps a tablebase file and checks that it was made for the given game.
+     *
+     * @throws IOException if the file can't be read or is not a tablebase of this game
+     */
+    private Tablebase(Path path, Game game) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("file too short");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("not a tablebase");
+        }
+        if (buffer.getInt(8) != game.getRows() || buffer.getInt(12) != game.getColumns() || buffer.getInt(16) != game.getNumberWin()) {
+            throw new IOException("made for another game");
+        }
+        weights = weights(game.getRows() * game.getColumns());
+        if (buffer.capacity() != HEADER_SIZE + codeBytes(weights)) {
+            throw new IOException("wrong size");
+        }
+    }
+
+    /**
+     * Finds the best move of the position: the fastest win, else a draw, else the slowest loss.
+     *
+     * @param game the current game state, which must still be PLAYING
+     * @return the best move, or -1 if the position is not in the tablebase
+     */
+    public int bestMove(Game game) {
+        int index = index(game);
+        if (code(index) == UNREACHABLE) return -1;
+        boolean xToPlay = game.nextBoxSymbol() == BoxSymbol.X;
+        int digit = xToPlay ? 1 : 2;
+        int bestMove = -1;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < weights.length; i++) {
+            if (game.boxSymbolAt(i) != null) continue;
+            int score = score(code(index + digit * weights[i]), xToPlay);
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = i;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Value of the position for the player to move: 1 (won), 0 (draw) or -1 (lost).
+     *
+     * @param game the current game state
+     * @return the value, 0 if the position is not in the tablebase
+     */
+    public int value(Game game) {
+        return Integer.signum(score(code(index(game)), game.nextBoxSymbol() == BoxSymbol.X));
+    }
+
+    /**
+     * Number of moves left until the game ends under perfect play.
+     *
+     * @param game the current game state
+     * @return the distance to the end, the number of empty boxes for a draw
+     */
+    public int distance(Game game) {
+        int code = code(index(game));
+        int boxes = weights.length;
+        return code == UNREACHABLE || code == DRAW ? boxes - game.getRound() : code + 1 - game.getRound();
+    }
+
+    // Ternary index of the board of a game
+    private int index(Game game) {
+        int index = 0;
+        for (int i = 0; i < weights.length; i++) {
+            BoxSymbol symbol = game.boxSymbolAt(i);
+            if (symbol != null) index += (symbol == BoxSymbol.X ? 1 : 2) * weights[i];
+        }
+        return index;
+    }
+
+    private int code(int index) {
+        int b = buffer.get(HEADER_SIZE + (index >>> 1));
+        return (index & 1) == 0 ? b & 0xF : (b >>> 4) & 0xF;
+    }
+
+    /**
+     * Orders the codes for the player to move: faster wins first and slower losses first, the draw in between.
+     */
+    private static int score(int code, boolean xToPlay) {
+        if (code == UNREACHABLE || code == DRAW) return 0;
+        int end = code + 1; // Round of the winning move
+        boolean xWins = end % 2 == 1;
+        return xWins == xToPlay ? MAX_BOXES + 2 - end : -(MAX_BOXES + 2 - end);
+    }
+
+    private static int[] weights(int boxes) {
+        int[] weights = new int[boxes];
+        int weight = 1;
+        for (int i = 0; i < boxes; i++) {
+            weights[i] = weight;
+            weight *= 3;
+        }
+        return weights;
+    }
+
+    // Bytes of the codes of every index
+    private static int codeBytes(int[] weights) {
+        int size = weights.length == 0 ? 1 : weights[weights.length - 1] * 3;
+        return (size + 1) / 2;
+    }
+
+    /**
+     * Builds the tablebase of a game and writes it to its file in the working directory.
+     *
+     * @param args expected as: game, ROWSxCOLUMNS/WIN for Tic Tac Toe with at most MAX_BOXES boxes (e.g. 4x4/3)
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java Tablebase <game>");
+            System.out.println("  game: ROWSxCOLUMNS/WIN for Tic Tac Toe of at most " + MAX_BOXES + " boxes (e.g. 4x4/3)");
+            return;
+        }
+        Game game = Tournament.newGame(args[0]);
+        if (!(game instanceof TTT) || game.getRows() * game.getColumns() > MAX_BOXES) {
+            throw new IllegalArgumentException("Tablebases are built for Tic Tac Toe boards of at most " + MAX_BOXES + " boxes.");
+        }
+        if (game.getNumberWin() < 2) {
+            throw new IllegalArgumentException("A tablebase needs at least 2 symbols in a row to win.");
+        }
+
+        long startTime = System.nanoTime();
+        byte[] codes = build(game);
+        System.out.printf("Solved in %.1f s%n", (System.nanoTime() - startTime) / 1e9);
+
+        Path path = Path.of(getFileName(game));
+        write(path, game, codes);
+        System.out.println("Written to " + path);
+    }
+
+    /**
+     * Solves every reachable position of the game by retrograde analysis.
+     *
+     * @return the codes of every index, two per byte
+     */
+    static byte[] build(Game game) {
+        int boxes = game.getRows() * game.getColumns();
+        int[] weights = weights(boxes);
+        int size = boxes == 0 ? 1 : weights[boxes - 1] * 3;
+        byte[] codes = new byte[codeBytes(weights)];
+        long[] reachable = new long[(size + 63) / 64];
+        int[][] lines = lineCells(game.getLines());
+        int[] cells = new int[boxes];
+
+        // Forward: the positions after the moves of every reachable position that is not over are reachable
+        reachable[0] |= 1;
+        long positions = 0;
+        for (int index = 0; index < size; index++) {
+            if ((reachable[index >>> 6] & 1L << index) == 0) continue;
+            positions++;
+            int round = decode(index, cells);
+            int winner = winner(cells, lines);
+            if (winner != 0) {
+                setCode(codes, index, round - 1); // The winning move was the last one
+                continue;
+            }
+            if (round == boxes) {
+                setCode(codes, index, DRAW);
+                continue;
+            }
+            int digit = round % 2 == 0 ? 1 : 2;
+            for (int i = 0; i < boxes; i++) {
+                if (cells[i] != 0) continue;
+                int child = index + digit * weights[i];
+                reachable[child >>> 6] |= 1L << child;
+            }
+        }
+
+        // Backward: every other reachable position takes the code of its best move, whose position is already solved
+        for (int index = size - 1; index >= 0; index--) {
+            if ((reachable[index >>> 6] & 1L << index) == 0 || getCode(codes, index) != UNREACHABLE) continue;
+            int round = decode(index, cells);
+            boolean xToPlay = round % 2 == 0;
+            int digit = xToPlay ? 1 : 2;
+            int bestCode = UNREACHABLE;
+            int bestScore = Integer.MIN_VALUE;
+            for (int i = 0; i < boxes; i++) {
+                if (cells[i] != 0) continue;
+                int code = getCode(codes, index + digit * weights[i]);
+                int score = score(code, xToPlay);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestCode = code;
+                }
+            }
+            setCode(codes, index, bestCode);
+        }
+
+        int start = getCode(codes, 0);
+        System.out.println(game.getRows() + "x" + game.getColumns() + "/" + game.getNumberWin() + ": " + positions + " reachable positions of "
+                + size + ", " + (start == DRAW ? "draw" : (start % 2 == 0 ? "X" : "O") + " wins at move " + (start + 1)));
+        return codes;
+    }
+
+    // Writes the digits of an index into cells and returns the number of symbols
+    private static int decode(int index, int[] cells) {
+        int symbols = 0;
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = index % 3;
+            index /= 3;
+            if (cells[i] != 0) symbols++;
+        }
+        return symbols;
+    }
+
+    // Digit of the player holding a full line, 0 if there is none
+    private static int winner(int[] cells, int[][] lines) {
+        for (int[] line : lines) {
+            int digit = cells[line[0]];
+            for (int j = 1; j < line.length && digit != 0; j++) {
+                if (cells[line[j]] != digit) digit = 0;
+            }
+            if (digit != 0) return digit;
+        }
+        return 0;
+    }
+
+    // Boxes of each line of the board
+    private static int[][] lineCells(LineIndex lines) {
+        int[][] cells = new int[lines.getLineCount()][lines.getNumberWin()];
+        for (int k = 0; k < cells.length; k++) {
+            for (int j = 0; j < cells[k].length; j++) {
+                cells[k][j] = lines.cellOf(k, j);
+            }
+        }
+        return cells;
+    }
+
+    private static int getCode(byte[] codes, int index) {
+        int b = codes[index >>> 1];
+        return (index & 1) == 0 ? b & 0xF : (b >>> 4) & 0xF;
+    }
+
+    private static void setCode(byte[] codes, int index, int code) {
+        int shift = (index & 1) * 4;
+        codes[index >>> 1] = (byte) (codes[index >>> 1] & ~(0xF << shift) | code << shift);
+    }
+
+    /**
+     * Writes the tablebase file: the header, then the codes.
+     */
+    private static void write(Path path, Game game, byte[] codes) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(game.getRows()).putInt(game.getColumns()).putInt(game.getNumberWin());
+        header.flip();
+        ByteBuffer data = ByteBuffer.wrap(codes);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+}
@@ -0,0 +1,358 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Threat-space search for k-in-a-row on big Tic Tac Toe boards, run before the general search
+ * to find the forcing wins that random playouts can't see, and the threats that must be blocked.
+ *
+ * It works on the line counters of the game. A four is a line holding numberWin - 1 symbols of the
+ * attacker and none of the defender: the defender must play its last empty box. Making a four takes
+ * a line holding numberWin - 2 symbols of the attacker, an open run with two empty boxes.
+ * - Victory by continuous fours: the attacker only plays fours and the defender the forced blocks,
+ *   until the attacker makes two fours at once or the defender makes a four of its own that can't
+ *   be blocked by a four. Each position has a handful of moves, so the search is deep and fast.
+ * - One quiet threat at the root: a move filling a line up to numberWin - 2 symbols, after which
+ *   every reply of the defender still loses to continuous fours.
+ * - Defence: when the opponent would win by continuous fours, only the moves after which it can't
+ *   are kept, and the one that best combines attack and defence on its lines is played.
+ *
+ * The memory is bounded: a move buffer per ply up to MAX_PLIES and a fixed table of the positions
+ * already refuted, indexed by Zobrist hash.
+ */
+public class ThreatSearch {
+    // Longest sequence of fours searched, in moves of both players
+    private static final int MAX_PLIES = 48;
+
+    // Positions refuted during the current search: 2^15 hashes
+    private static final int REFUTED_BITS = 15;
+
+    // Set by another thread to stop the search early
+    private final AtomicBoolean stop;
+
+    private final long[] refuted = new long[1 << REFUTED_BITS];
+
+    // Board the buffers below were sized for
+    private int boxes;
+    private int[][] moves = new int[MAX_PLIES][]; // Candidate moves of each ply
+    private int[] marks; // Boxes already listed at the current ply are marked with markStamp
+    private int markStamp;
+
+    // State of the current search
+    private long deadline;
+    private long nodes;
+    private boolean timeUp;
+    private boolean win; // The move found wins by force
+    private boolean defence; // The move found is one of the few that stop a forced win of the opponent
+
+    /**
+     * Creates a search that only stops at its deadline.
+     */
+    public ThreatSearch() {
+        this(new AtomicBoolean());
+    }
+
+    /**
+     * Creates a search that also stops as soon as the given flag is set.
+     *
+     * @param stop flag set by another thread to stop the search early
+     */
+    public ThreatSearch(AtomicBoolean stop) {
+        this.stop = stop;
+    }
+
+    // Getters for the last search
+    public long getNodes() {return nodes;}
+
+    public boolean isWin() {return win;}
+
+    public boolean isDefence() {return defence;}
+
+    /**
+     * Looks for a forced win of the player to move, then for a forced win of the opponent to stop.
+     * The game is played and undone in place and is left unchanged.
+     *
+     * @param game the current game state, which must still be PLAYING
+     * @param deadline time (System.nanoTime) at which the search gives up
+     * @return a winning move, else the best defence against a forced win of the opponent,
+     *         or -1 if neither was found: the general search should choose the move
+     */
+    public int search(Game game, long deadline) {
+        prepare(game);
+        this.deadline = deadline;
+        this.nodes = 0;
+        this.timeUp = false;
+        this.win = false;
+        this.defence = false;
+        Arrays.fill(refuted, 0);
+
+        int move = fours(game, 0);
+        if (move < 0 && !timeUp) {
+            move = quietThreat(game);
+        }
+        if (move >= 0) {
+            win = true;
+            return move;
+        }
+        if (timeUp) return -1;
+
+        move = defend(game);
+        defence = move >= 0;
+        return move;
+    }
+
+    /**
+     * Victory by continuous fours for the player to move.
+     *
+     * @return the first move of a win, or -1 if there is none within MAX_PLIES or the time is up
+     */
+    private int fours(Game game, int ply) {
+        // Check the clock once in a while
+        if (++nodes % 1024 == 0 && (stop.get() || System.nanoTime() >= deadline)) {
+            timeUp = true;
+        }
+        if (timeUp || ply >= MAX_PLIES - 1) return -1;
+
+        boolean xToPlay = game.nextBoxSymbol() == BoxSymbol.X;
+        int numberWin = game.getNumberWin();
+        LineIndex lines = game.getLines();
+        int lineCount = lines.getLineCount();
+
+        // A four of the player to move wins at once, else the fours of the defender must be blocked
+        int block = -1;
+        boolean twoBlocks = false;
+        for (int k = 0; k < lineCount; k++) {
+            int own = xToPlay ? game.getXCount(k) : game.getOCount(k);
+            int other = xToPlay ? game.getOCount(k) : game.getXCount(k);
+            if (own == numberWin - 1 && other == 0) return emptyBox(game, k);
+            if (other == numberWin - 1 && own == 0) {
+                int box = emptyBox(game, k);
+                twoBlocks |= block >= 0 && block != box;
+                block = box;
+            }
+        }
+        if (twoBlocks || refuted[index(game.getHash())] == game.getHash()) return -1;
+
+        // The moves making a four: the forced block if the defender has a four, else the empty boxes of the open runs
+        int[] candidates = moves[ply];
+        int count = 0;
+        if (block >= 0) {
+            candidates[count++] = block;
+        } else {
+            markStamp++;
+            for (int k = 0; k < lineCount; k++) {
+                int own = xToPlay ? game.getXCount(k) : game.getOCount(k);
+                int other = xToPlay ? game.getOCount(k) : game.getXCount(k);
+                if (own != numberWin - 2 || other != 0) continue;
+                for (int j = 0; j < numberWin; j++) {
+                    int box = lines.cellOf(k, j);
+                    if (game.boxSymbolAt(box) == null && marks[box] != markStamp) {
+                        marks[box] = markStamp;
+                        candidates[count++] = box;
+                    }
+                }
+            }
+        }
+
+        for (int c = 0; c < count; c++) {
+            int move = candidates[c];
+            game.play(move);
+            int reply = fourBlock(game, move);
+            boolean won = reply == -2;
+            if (reply >= 0) {
+                // The defender has to block, then the attacker goes on
+                game.play(reply);
+                won = fours(game, ply + 2) >= 0;
+                game.undo(reply);
+            }
+            game.undo(move);
+            if (won) return move;
+            if (timeUp) return -1;
+        }
+        refuted[index(game.getHash())] = game.getHash();
+        return -1;
+    }
+
+    /**
+     * Finds how the defender must answer the move just played.
+     *
+     * @param move the move of the attacker
+     * @return the box blocking the four made by the move, -2 if the move made two fours that can't both
+     *         be blocked, or -1 if it made no four
+     */
+    private static int fourBlock(Game game, int move) {
+        boolean xPlayed = game.nextBoxSymbol() == BoxSymbol.O;
+        int numberWin = game.getNumberWin();
+        LineIndex lines = game.getLines();
+        int block = -1;
+        for (int j = lines.firstLineOf(move); j < lines.endLineOf(move); j++) {
+            int k = lines.getCellLine(j);
+            int own = xPlayed ? game.getXCount(k) : game.getOCount(k);
+            int other = xPlayed ? game.getOCount(k) : game.getXCount(k);
+            if (own == numberWin - 1 && other == 0) {
+                int box = emptyBox(game, k);
+                if (block >= 0 && block != box) return -2;
+                block = box;
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Looks for a quiet move of the player to move after which every reply of the opponent
+     * loses to continuous fours. Only tried when the opponent has no four to be blocked.
+     *
+     * @return the winning move, or -1 if there is none or the time is up
+     */
+    private int quietThreat(Game game) {
+        boolean xToPlay = game.nextBoxSymbol() == BoxSymbol.X;
+        int numberWin = game.getNumberWin();
+        if (numberWin < 4) return -1; // Every empty line would be a threat
+        LineIndex lines = game.getLines();
+        int lineCount = lines.getLineCount();
+        for (int k = 0; k < lineCount; k++) {
+            int other = xToPlay ? game.getOCount(k) : game.getXCount(k);
+            if (other == numberWin - 1 && (xToPlay ? game.getXCount(k) : game.getOCount(k)) == 0) return -1;
+        }
+
+        // The boxes of the lines a move fills up to numberWin - 2 symbols
+        int[] threats = moves[0];
+        int count = 0;
+        markStamp++;
+        for (int k = 0; k < lineCount; k++) {
+            int own = xToPlay ? game.getXCount(k) : game.getOCount(k);
+            int other = xToPlay ? game.getOCount(k) : game.getXCount(k);
+            if (own != numberWin - 3 || other != 0) continue;
+            for (int j = 0; j < numberWin; j++) {
+                int box = lines.cellOf(k, j);
+                if (game.boxSymbolAt(box) == null && marks[box] != markStamp) {
+                    marks[box] = markStamp;
+                    threats[count++] = box;
+                }
+            }
+        }
+
+        int[] replies = moves[1];
+        for (int t = 0; t < count && !timeUp; t++) {
+            int move = threats[t];
+            game.play(move);
+            boolean won = game.getGameState() == GameState.PLAYING;
+            int replyCount = won ? everyMove(game, replies) : 0;
+            // Every reply of the defender must lose, its fours included
+            for (int r = 0; r < replyCount && won; r++) {
+                game.play(replies[r]);
+                won = game.getGameState() == GameState.PLAYING && fours(game, 2) >= 0;
+                game.undo(replies[r]);
+            }
+            game.undo(move);
+            if (won && !timeUp) return move;
+        }
+        return -1;
+    }
+
+    /**
+     * Keeps the moves after which the opponent has no victory by continuous fours.
+     *
+     * @return the safe move with the best line value, or -1 if the opponent has no such win,
+     *         every move loses, or the time is up
+     */
+    private int defend(Game game) {
+        boolean xToPlay = game.nextBoxSymbol() == BoxSymbol.X;
+        int numberWin = game.getNumberWin();
+        int lineCount = game.getLines().getLineCount();
+
+        // Continuous fours need an open run of the opponent
+        boolean runs = false;
+        for (int k = 0; k < lineCount && !runs; k++) {
+            int own = xToPlay ? game.getXCount(k) : game.getOCount(k);
+            int other = xToPlay ? game.getOCount(k) : game.getXCount(k);
+            runs = own == 0 && other >= numberWin - 2;
+        }
+        if (!runs) return -1;
+
+        int[] candidates = moves[0];
+        int count = everyMove(game, candidates);
+        int safeCount = 0;
+        for (int c = 0; c < count && !timeUp; c++) {
+            int move = candidates[c];
+            game.play(move);
+            boolean safe = game.getGameState() != GameState.PLAYING || fours(game, 1) < 0;
+            game.undo(move);
+            if (safe) candidates[safeCount++] = move;
+        }
+        if (timeUp || safeCount == 0 || safeCount == count) return -1;
+
+        int bestMove = -1;
+        long bestValue = -1;
+        for (int c = 0; c < safeCount; c++) {
+            long value = lineValue(game, candidates[c], xToPlay);
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = candidates[c];
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Values a box by the lines through it: an open line of the player counts for attack,
+     * an open line of the opponent for defence, both 4 times more for each symbol they hold.
+     */
+    private static long lineValue(Game game, int box, boolean xToPlay) {
+        LineIndex lines = game.getLines();
+        long value = 0;
+        for (int j = lines.firstLineOf(box); j < lines.endLineOf(box); j++) {
+            int k = lines.getCellLine(j);
+            int own = xToPlay ? game.getXCount(k) : game.getOCount(k);
+            int other = xToPlay ? game.getOCount(k) : game.getXCount(k);
+            if (other == 0) value += 1L << Math.min(2 * own, 60);
+            if (own == 0) value += 1L << Math.min(2 * other, 60);
+        }
+        return value;
+    }
+
+    /**
+     * Lists every empty box: the moves of the game first, then the boxes that large-board mode leaves out,
+     * as a defence far from the symbols can still stop a threat on a long line.
+     *
+     * @return the number of boxes listed
+     */
+    private int everyMove(Game game, int[] boxes) {
+        int count = game.getAvailableMoves(boxes);
+        markStamp++;
+        for (int k = 0; k < count; k++) {
+            marks[boxes[k]] = markStamp;
+        }
+        for (int i = 0; i < this.boxes; i++) {
+            if (game.boxSymbolAt(i) == null && marks[i] != markStamp) boxes[count++] = i;
+        }
+        return count;
+    }
+
+    // First empty box of a line
+    private static int emptyBox(Game game, int line) {
+        LineIndex lines = game.getLines();
+        for (int j = 0; j < lines.getNumberWin(); j++) {
+            int box = lines.cellOf(line, j);
+            if (game.boxSymbolAt(box) == null) return box;
+        }
+        throw new IllegalStateException("Line " + line + " is full");
+    }
+
+    private static int index(long hash) {
+        return (int) (hash >>> (64 - REFUTED_BITS));
+    }
+
+    /**
+     * Sizes the move buffers for the board.
+     */
+    private void prepare(Game game) {
+        int size = game.getRows() * game.getColumns();
+        if (size == boxes) return;
+        boxes = size;
+        for (int ply = 0; ply < MAX_PLIES; ply++) {
+            moves[ply] = new int[size];
+        }
+        marks = new int[size];
+        markStamp = 0;
+    }
+}
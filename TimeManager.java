@@ -0,0 +1,137 @@
+/**
+ * Time management of a computer: how long each move may think, within a budget for the whole game,
+ * and when a search can stop before its time is up.
+ *
+ * The budget of a game is the thinking time for every move played. Each move is given a share that
+ * depends on the phase of the game: half of the thinking time for the first moves, up to one and a half
+ * in the middle game where the moves matter the most, and less again towards the end, where the solvers
+ * take over. A move only thinks longer than the thinking time with time saved by earlier moves, those
+ * that stopped early or were answered at once, and time overrun is paid back by the next moves.
+ * No move is given more than MAX_FACTOR times the thinking time.
+ *
+ * The times are read with System.nanoTime, which never goes back, and the search loops only read it
+ * every CLOCK_CHECK iterations.
+ */
+public class TimeManager {
+    // Share of the thinking time given to a move at the start of the game and in the middle game
+    private static final double OPENING_WEIGHT = 0.5;
+    private static final double MIDDLE_WEIGHT = 1.5;
+
+    // Share of the board filled when the weight is back to the opening weight, the middle game being halfway
+    private static final double ENDGAME_FILL = 0.7;
+
+    // Bounds of the time of a move, in thinking times
+    private static final double MIN_FACTOR = 0.25;
+    private static final double MAX_FACTOR = 3;
+
+    // Iterations of the search loops between two readings of the clock
+    public static final int CLOCK_CHECK = 16;
+
+    // Standard errors by which the best move of the playouts must lead every other move, after MIN_PLAYOUTS each
+    private static final double LEAD_ERRORS = 3;
+    private static final int MIN_PLAYOUTS = 32;
+
+    private final long thinkingNanos;
+
+    // Game of the previous move and its round, to tell when a new game starts
+    private Game game;
+    private int round = -1;
+
+    // Time saved by the previous moves of the game, negative when they overran their share
+    private long saved;
+
+    /**
+     * Creates the time manager of a computer.
+     *
+     * @param thinkingTime average time in ms of a move
+     */
+    public TimeManager(int thinkingTime) {
+        this.thinkingNanos = thinkingTime * 1_000_000L;
+    }
+
+    /**
+     * Forgets the game of the previous moves and the time they saved, so that the next move starts a new budget.
+     */
+    public void reset() {
+        game = null;
+        round = -1;
+        saved = 0;
+    }
+
+    /**
+     * Gives the time of the next move, starting a new budget when the game is a new one.
+     *
+     * @param game the current game state
+     * @return the time the move may think, in ns
+     */
+    public long allocate(Game game) {
+        if (game != this.game || game.getRound() <= round) {
+            this.game = game;
+            saved = 0;
+        }
+        round = game.getRound();
+
+        double fill = (double) game.getRound() / (game.getRows() * game.getColumns());
+        double weight = OPENING_WEIGHT + (MIDDLE_WEIGHT - OPENING_WEIGHT) * Math.sin(Math.PI * Math.min(1, fill / ENDGAME_FILL));
+        long time = (long) (thinkingNanos * weight);
+        if (time > thinkingNanos) {
+            // Thinking longer than average is paid with the time saved
+            time = Math.min(time, thinkingNanos + Math.max(0, saved));
+        }
+        if (saved < 0) {
+            time += saved / 2;
+        }
+        return Math.max((long) (thinkingNanos * MIN_FACTOR), Math.min((long) (thinkingNanos * MAX_FACTOR), time));
+    }
+
+    /**
+     * Records the time the move took, the difference with the thinking time being saved or owed.
+     *
+     * @param elapsedNanos time the move took
+     */
+    public void spent(long elapsedNanos) {
+        saved += thinkingNanos - elapsedNanos;
+    }
+
+    /**
+     * Tells if the playouts have decided the best move: its average result leads every other move
+     * by LEAD_ERRORS standard errors, which the remaining playouts are very unlikely to overturn.
+     * The results being -1, 0 or 1, the variance of a move is at most 1 - average^2.
+     *
+     * @param wins sum of the playout results of each move, 1 for a win of O
+     * @param plays number of playouts of each move
+     * @param sign 1 if O is to move, -1 for X
+     */
+    public static boolean isDecided(int[] wins, int[] plays, int sign) {
+        int best = -1;
+        double bestMean = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < plays.length; k++) {
+            if (plays[k] < MIN_PLAYOUTS) return false;
+            double mean = sign * (double) wins[k] / plays[k];
+            if (mean > bestMean) {
+                bestMean = mean;
+                best = k;
+            }
+        }
+        double bestError = (1 - bestMean * bestMean) / plays[best];
+        for (int k = 0; k < plays.length; k++) {
+            if (k == best) continue;
+            double mean = sign * (double) wins[k] / plays[k];
+            double error = Math.sqrt(bestError + (1 - mean * mean) / plays[k]);
+            if (bestMean - mean <= LEAD_ERRORS * error) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tells if the most visited move of a tree search can no longer be overtaken:
+     * even if every remaining iteration went to the second move, it would not catch up.
+     *
+     * @param bestVisits visits of the most visited move
+     * @param secondVisits visits of the second most visited move
+     * @param remainingIterations iterations the search is expected to run until its deadline
+     */
+    public static boolean isDecided(long bestVisits, long secondVisits, long remainingIterations) {
+        return bestVisits - secondVisits > remainingIterations;
+    }
+}
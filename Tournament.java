@@ -0,0 +1,208 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless tournament between two computer configurations, used to tune the AI.
+ * The games are played in parallel, each configuration playing X in half of them,
+ * and the results are reported from the point of view of the first configuration.
+ */
+public class Tournament {
+    // Settings of a computer, as given on the command line: STRATEGY:ms[:easy]
+    private final String[] specs = new String[2];
+
+    // Statistics of the finished games
+    private int wins; // Games won by the first configuration
+    private int draws;
+    private int losses;
+    private final long[] thinkingNanos = new long[2]; // Total thinking time of each configuration
+    private final long[] moves = new long[2]; // Moves played by each configuration
+
+    // One pair of computers per worker thread, reused from game to game
+    private final ThreadLocal<Computer[]> computers = ThreadLocal.withInitial(() -> new Computer[] {parse(specs[0]), parse(specs[1])});
+
+    /**
+     * Entry point of the tournament.
+     *
+     * @param args expected as: game playerA playerB [games] [threads]
+     *             game is ROWSxCOLUMNS/WIN for Tic Tac Toe or C4[:ROWSxCOLUMNS/WIN] for Connect 4,
+     *             a player is STRATEGY:ms, with :easy at the end to turn minimax off
+     *             (for example ALPHA_BETA:100 or MCTS:50:easy)
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: java Tournament <game> <playerA> <playerB> [games] [threads]");
+            System.out.println("  game:   ROWSxCOLUMNS/WIN for Tic Tac Toe (e.g. 5x5/4) or C4[:ROWSxCOLUMNS/WIN] for Connect 4 (e.g. C4:9x9/5)");
+            System.out.println("  player: STRATEGY:ms[:easy], STRATEGY being one of " + java.util.Arrays.toString(SearchStrategy.values()));
+            return;
+        }
+        int games = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        Tournament tournament = new Tournament(args[1], args[2]);
+        newGame(args[0]); // Fail early on an invalid game
+        tournament.run(args[0], games, threads);
+    }
+
+    /**
+     * Creates a tournament between two computer configurations.
+     *
+     * @param playerA settings of the first computer, STRATEGY:ms[:easy]
+     * @param playerB settings of the second computer, STRATEGY:ms[:easy]
+     */
+    public Tournament(String playerA, String playerB) {
+        specs[0] = playerA;
+        specs[1] = playerB;
+        parse(playerA); // Fail early on invalid settings
+        parse(playerB);
+    }
+
+    /**
+     * Plays the games on a pool of threads and prints the results.
+     *
+     * @param gameName ROWSxCOLUMNS/WIN or C4[:ROWSxCOLUMNS/WIN]
+     * @param games number of games to play
+     * @param threads number of games played at the same time
+     */
+    public void run(String gameName, int games, int threads) {
+        System.out.println("Tournament: " + specs[0] + " vs " + specs[1] + " on " + gameName + ", " + games + " games on " + threads + " threads");
+        long startTime = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> results = new ArrayList<>(games);
+        for (int g = 0; g < games; g++) {
+            boolean firstPlaysX = g % 2 == 0;
+            results.add(pool.submit(() -> playGame(newGame(gameName), firstPlaysX)));
+        }
+        try {
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        report((System.nanoTime() - startTime) / 1e9);
+    }
+
+    /**
+     * Plays one game between the two configurations and records its result.
+     *
+     * @param game a new game
+     * @param firstPlaysX true if the first configuration plays X
+     */
+    private void playGame(Game game, boolean firstPlaysX) {
+        Computer[] players = computers.get();
+        int xPlayer = firstPlaysX ? 0 : 1;
+        players[xPlayer].startNewGame(BoxSymbol.X);
+        players[1 - xPlayer].startNewGame(BoxSymbol.O);
+
+        long[] nanos = new long[2];
+        int[] played = new int[2];
+        while (game.getGameState() == GameState.PLAYING) {
+            int turn = game.getRound() % 2 == 0 ? xPlayer : 1 - xPlayer;
+            long start = System.nanoTime();
+            players[turn].play(game);
+            nanos[turn] += System.nanoTime() - start;
+            played[turn]++;
+        }
+
+        GameState firstWin = firstPlaysX ? GameState.X_WIN : GameState.O_WIN;
+        synchronized (this) {
+            if (game.getGameState() == GameState.DRAW) draws++;
+            else if (game.getGameState() == firstWin) wins++;
+            else losses++;
+            for (int p = 0; p < 2; p++) {
+                thinkingNanos[p] += nanos[p];
+                moves[p] += played[p];
+            }
+        }
+    }
+
+    /**
+     * Prints the results: win/draw/loss, Elo difference with its 95% confidence interval,
+     * average thinking time and games per second.
+     */
+    private synchronized void report(double seconds) {
+        int games = wins + draws + losses;
+        double score = (wins + 0.5 * draws) / games;
+
+        // Standard error of the mean score of a game (1, 0.5 or 0)
+        double variance = (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2) + losses * Math.pow(score, 2)) / games;
+        double margin = 1.96 * Math.sqrt(variance / games);
+
+        System.out.println("\n==============================");
+        System.out.println(specs[0] + " vs " + specs[1]);
+        System.out.println("Wins: " + wins + "  Draws: " + draws + "  Losses: " + losses);
+        System.out.printf("Score: %.1f%%%n", 100 * score);
+        System.out.printf("Elo difference: %s  (95%% interval: %s to %s)%n",
+                formatElo(elo(score)), formatElo(elo(score - margin)), formatElo(elo(score + margin)));
+        for (int p = 0; p < 2; p++) {
+            System.out.printf("Average thinking time of %s: %.1f ms per move%n", specs[p], moves[p] == 0 ? 0 : thinkingNanos[p] / 1e6 / moves[p]);
+        }
+        System.out.printf("%d games in %.1f s: %.2f games per second%n", games, seconds, games / seconds);
+        System.out.println("==============================");
+    }
+
+    /**
+     * Converts a score (share of points won) into an Elo rating difference.
+     */
+    private static double elo(double score) {
+        if (score <= 0) return Double.NEGATIVE_INFINITY;
+        if (score >= 1) return Double.POSITIVE_INFINITY;
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    private static String formatElo(double elo) {
+        if (Double.isInfinite(elo)) return elo > 0 ? "+inf" : "-inf";
+        return String.format("%+.0f", elo);
+    }
+
+    /**
+     * Creates a game from its name: ROWSxCOLUMNS/WIN for Tic Tac Toe,
+     * C4 for Connect 4 on the standard board and C4:ROWSxCOLUMNS/WIN for other sizes.
+     * Boards have 1 to C4.MAX_SIZE rows and columns, and 2 to max(rows, columns) symbols in a row to win.
+     *
+     * @throws IllegalArgumentException if the name is invalid or the size is out of these bounds
+     */
+    static Game newGame(String name) {
+        if (name.equalsIgnoreCase("C4")) {
+            return new C4();
+        }
+        boolean connect4 = name.regionMatches(true, 0, "C4:", 0, 3);
+        String[] size = name.substring(connect4 ? 3 : 0).split("[x/]");
+        if (size.length != 3) {
+            throw new IllegalArgumentException("Invalid game: " + name + ". Use ROWSxCOLUMNS/WIN, C4 or C4:ROWSxCOLUMNS/WIN.");
+        }
+        int rows = Integer.parseInt(size[0]);
+        int columns = Integer.parseInt(size[1]);
+        int numberWin = Integer.parseInt(size[2]);
+        if (rows < 1 || rows > C4.MAX_SIZE || columns < 1 || columns > C4.MAX_SIZE) {
+            throw new IllegalArgumentException("Boards have 1 to " + C4.MAX_SIZE + " rows and columns: " + rows + "x" + columns);
+        }
+        if (numberWin < 2 || numberWin > Math.max(rows, columns)) {
+            throw new IllegalArgumentException("The number in a row to win must be 2 to " + Math.max(rows, columns) + ": " + numberWin);
+        }
+        return connect4 ? new C4(rows, columns, numberWin) : new TTT(rows, columns, numberWin);
+    }
+
+    /**
+     * Creates a silent, single-threaded computer from its settings: STRATEGY:ms[:easy].
+     */
+    static Computer parse(String spec) {
+        String[] parts = spec.split(":");
+        if (parts.length < 2 || parts.length > 3 || (parts.length == 3 && !parts[2].equalsIgnoreCase("easy"))) {
+            throw new IllegalArgumentException("Invalid player: " + spec + ". Use STRATEGY:ms[:easy].");
+        }
+        Computer computer = new Computer(SearchStrategy.valueOf(parts[0].toUpperCase()), Integer.parseInt(parts[1]), parts.length == 2, 1);
+        computer.setVerbose(false);
+        return computer;
+    }
+}
@@ -0,0 +1,98 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table remembering the result of positions already searched,
+ * indexed by the Zobrist hash of the board.
+ *
+ * The number of entries is a power of two so the slot of a hash is found with a mask.
+ * Each slot holds the full hash, to detect collisions, and one packed long with the
+ * score, search depth, bound type and best move. A new entry always replaces the old one.
+ * The table counts its lookups for the search statistics, and is only used by one thread at a time.
+ */
+public class TranspositionTable {
+    // Bound types: how the stored score relates to the real score of the position
+    public static final int EXACT = 1; // The score is the real score
+    public static final int LOWER = 2; // The real score is at least the score (the search failed high)
+    public static final int UPPER = 3; // The real score is at most the score (the search failed low)
+
+    // Returned by probe() when the position is not in the table
+    public static final long MISS = 0;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int mask;
+
+    // Lookups since the last resetCounters(), and those that found the position
+    private long probes;
+    private long hits;
+
+    /**
+     * Creates a table with 2^log2Size entries.
+     *
+     * @param log2Size base 2 logarithm of the number of entries (1 to 30)
+     */
+    public TranspositionTable(int log2Size) {
+        if (log2Size < 1 || log2Size > 30) {
+            throw new IllegalArgumentException("Illegal table size: 2^" + log2Size);
+        }
+        this.keys = new long[1 << log2Size];
+        this.entries = new long[1 << log2Size];
+        this.mask = (1 << log2Size) - 1;
+    }
+
+    /**
+     * Looks a position up.
+     *
+     * @param hash Zobrist hash of the position
+     * @return the packed entry, to read with score(), depth(), bound() and move(), or MISS
+     */
+    public long probe(long hash) {
+        int slot = (int) hash & mask;
+        probes++;
+        if (keys[slot] != hash) return MISS;
+        hits++;
+        return entries[slot];
+    }
+
+    /**
+     * Stores the result of a search.
+     *
+     * @param hash Zobrist hash of the position
+     * @param depth number of moves searched below the position (0 to 255)
+     * @param score score of the position for the player to move
+     * @param bound EXACT, LOWER or UPPER
+     * @param move best move found, or -1 if none
+     */
+    public void store(long hash, int depth, int score, int bound, int move) {
+        int slot = (int) hash & mask;
+        keys[slot] = hash;
+        entries[slot] = (long) score << 32 | (long) (move + 1 & 0xFFFF) << 16 | (long) (depth & 0xFF) << 8 | bound;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, MISS);
+    }
+
+    // Lookup counters
+    public long getProbes() {return probes;}
+
+    public long getHits() {return hits;}
+
+    public void resetCounters() {
+        probes = 0;
+        hits = 0;
+    }
+
+    // Accessors of a packed entry
+    public static int score(long entry) {return (int) (entry >> 32);}
+
+    public static int move(long entry) {return (int) (entry >>> 16 & 0xFFFF) - 1;}
+
+    public static int depth(long entry) {return (int) (entry >>> 8 & 0xFF);}
+
+    public static int bound(long entry) {return (int) (entry & 0xFF);}
+}
@@ -0,0 +1,21 @@
+package game;
+
+/**
+ * Creates the boards measured by the benchmarks from their name:
+ * "ROWSxCOLUMNS/WIN" for Tic Tac Toe, "C4" for Connect 4 and "C4:ROWSxCOLUMNS/WIN" for other Connect 4 boards.
+ */
+final class Boards {
+    private Boards() {}
+
+    static Game create(String name) {
+        if (name.equals("C4")) {
+            return new C4();
+        }
+        if (name.startsWith("C4:")) {
+            String[] size = name.substring(3).split("[x/]");
+            return new C4(Integer.parseInt(size[0]), Integer.parseInt(size[1]), Integer.parseInt(size[2]));
+        }
+        String[] size = name.split("[x/]");
+        return new TTT(Integer.parseInt(size[0]), Integer.parseInt(size[1]), Integer.parseInt(size[2]));
+    }
+}
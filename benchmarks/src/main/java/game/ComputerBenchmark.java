@@ -0,0 +1,147 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Search speed and strength of the computer player.
+ */
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ComputerBenchmark {
+
+    /**
+     * Minimax solving an empty board with an empty transposition table.
+     * The nodes counter is reported per second.
+     */
+    @State(Scope.Thread)
+    public static class Solve {
+        @Param({"3x3/3", "4x4/4"})
+        public String board;
+
+        Game game;
+        Computer computer = new Computer();
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            game = Boards.create(board);
+            computer.clearMinimaxTable();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int minimax(Solve solve, Nodes nodes) {
+        int move = solve.computer.findBestMoveMinimax(solve.game, Long.MAX_VALUE);
+        nodes.nodes += solve.computer.getMinimaxNodes();
+        return move;
+    }
+
+    /**
+     * Flat Monte Carlo at a fixed thinking time, on positions whose perfect moves are known.
+     * The optimal counter divided by the decisions counter is the share of perfect moves.
+     */
+    @State(Scope.Thread)
+    public static class Positions {
+        @Param({"3x3/3", "4x4/4"})
+        public String board;
+
+        @Param({"10", "50"})
+        public int budget;
+
+        final ArrayList<Game> games = new ArrayList<>();
+        final ArrayList<boolean[]> optimalMoves = new ArrayList<>();
+        final Computer computer = new Computer(SearchStrategy.MONTE_CARLO, 100, true, 1);
+        int next;
+
+        @Setup
+        public void setup() {
+            SplittableRandom random = new SplittableRandom(7);
+            while (games.size() < 50) {
+                Game game = Boards.create(board);
+                int boxes = game.getRows() * game.getColumns();
+                int[] moves = new int[boxes];
+                // Leave at most 8 empty boxes so the perfect moves are quick to find
+                int played = Math.max(1, boxes - 8) + random.nextInt(3);
+                for (int k = 0; k < played && game.getGameState() == GameState.PLAYING; k++) {
+                    game.play(moves[random.nextInt(game.getAvailableMoves(moves))]);
+                }
+                if (game.getGameState() != GameState.PLAYING) continue;
+
+                // A move is optimal when it keeps the best result (win, draw or loss)
+                int count = game.getAvailableMoves(moves);
+                int[] results = new int[count];
+                int best = -1;
+                for (int k = 0; k < count; k++) {
+                    game.play(moves[k]);
+                    results[k] = -solve(game);
+                    game.undo(moves[k]);
+                    best = Math.max(best, results[k]);
+                }
+                boolean[] optimal = new boolean[boxes];
+                for (int k = 0; k < count; k++) {
+                    optimal[moves[k]] = results[k] == best;
+                }
+                games.add(game);
+                optimalMoves.add(optimal);
+            }
+        }
+
+        // Plain negamax: 1 if the player to move wins, 0 for a draw, -1 if it loses
+        private static int solve(Game game) {
+            if (game.getGameState() == GameState.DRAW) return 0;
+            if (game.getGameState() != GameState.PLAYING) return -1;
+            int[] moves = new int[game.getRows() * game.getColumns()];
+            int count = game.getAvailableMoves(moves);
+            int best = -1;
+            for (int k = 0; k < count && best < 1; k++) {
+                game.play(moves[k]);
+                best = Math.max(best, -solve(game));
+                game.undo(moves[k]);
+            }
+            return best;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Quality {
+        public long decisions;
+        public long optimal;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int monteCarlo(Positions positions, Quality quality) {
+        int index = positions.next++ % positions.games.size();
+        Game game = positions.games.get(index);
+        int move = positions.computer.MonteCarlo(game, System.nanoTime() + positions.budget * 1_000_000L);
+        quality.decisions++;
+        if (positions.optimalMoves.get(index)[move]) quality.optimal++;
+        return move;
+    }
+}
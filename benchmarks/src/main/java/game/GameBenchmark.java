@@ -0,0 +1,99 @@
+package game;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hot paths of the board models: moves, win detection, copies, move generation and playouts.
+ * Every benchmark starts from a position a quarter of the way into a random game.
+ * Run with -prof gc to see the bytes allocated per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+    @Param({"3x3/3", "5x5/4", "10x10/7", "C4", "C4:9x9/5"})
+    public String board;
+
+    private Game game;
+    private int[] moves;
+    private int move; // A legal move of the position
+    private int cell; // A box in the middle of the board
+    private SplittableRandom random;
+
+    @Setup
+    public void setup() {
+        random = new SplittableRandom(42);
+        int boxes;
+        do {
+            game = Boards.create(board);
+            boxes = game.getRows() * game.getColumns();
+            moves = new int[boxes];
+            for (int k = 0; k < boxes / 4 && game.getGameState() == GameState.PLAYING; k++) {
+                game.play(moves[random.nextInt(game.getAvailableMoves(moves))]);
+            }
+        } while (game.getGameState() != GameState.PLAYING);
+        game.getAvailableMoves(moves);
+        move = moves[0];
+        cell = boxes / 2;
+    }
+
+    // TTT.play / C4.play, including the win check, followed by undo
+    @Benchmark
+    public Game playUndo() {
+        game.play(move);
+        game.undo(move);
+        return game;
+    }
+
+    // The line counting done by Game.update for one move, then taken back
+    @Benchmark
+    public boolean update() {
+        boolean win = game.addToLines(cell, BoxSymbol.X);
+        game.removeFromLines(cell, BoxSymbol.X);
+        return win;
+    }
+
+    @Benchmark
+    public Game cloneGame() {
+        return game.clone();
+    }
+
+    @Benchmark
+    public ArrayList<Integer> availableMovesList() {
+        return game.getAvailableMoves();
+    }
+
+    @Benchmark
+    public int availableMovesArray() {
+        return game.getAvailableMoves(moves);
+    }
+
+    // Generic playout on a copy of the game, including the copy
+    @Benchmark
+    public int randomPlayout() {
+        return game.clone().randomPlayout(random);
+    }
+
+    // Playout used by the search, leaves the game untouched
+    @Benchmark
+    public int simulate() {
+        return game.simulate(random);
+    }
+}